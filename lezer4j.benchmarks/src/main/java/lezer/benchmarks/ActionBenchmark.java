@@ -0,0 +1,96 @@
+package lezer.benchmarks;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import lezer.parser.ActionIndex;
+import lezer.parser.ParseState;
+import lezer.parser.Seq;
+
+/// Measures finding the action for a terminal in a parse state, as
+/// done for every token on every stack, by scanning the state's
+/// action sequence and through an [`ActionIndex`](#lezer.ActionIndex),
+/// with a term count that uses dense lookups and one that uses
+/// hashing. The tables are synthetic, with wide action rows.
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ActionBenchmark {
+
+	public static final int States = 300;
+	public static final int Lookups = 1 << 12;
+
+	@State(Scope.Benchmark)
+	public static class Tables {
+
+		@Param({ "200", "600" })
+		public int terms;
+
+		public int[] states = new int[States * ParseState.Size];
+		public char[] data;
+		public ActionIndex[] indexes = new ActionIndex[States];
+		/// State and terminal pairs, most of which have an action.
+		public int[] lookups = new int[Lookups * 2];
+
+		@Setup(Level.Trial)
+		public void setup() {
+			Random random = new Random(1);
+			char[] data = new char[States * (150 * 3 + 4)];
+			int size = 0;
+			for (int state = 0; state < States; state++) {
+				this.states[state * ParseState.Size + ParseState.Actions] = size;
+				int entries = 50 + random.nextInt(100);
+				for (int i = 0; i < entries; i++) {
+					data[size++] = (char) (1 + random.nextInt(this.terms - 1));
+					data[size++] = (char) (1 + random.nextInt(0xfff0));
+					data[size++] = 0;
+				}
+				data[size++] = Seq.End;
+				data[size++] = Seq.Done;
+				this.states[state * ParseState.Size + ParseState.Skip] = size;
+				data[size++] = Seq.End;
+				data[size++] = Seq.Done;
+			}
+			this.data = data;
+			for (int state = 0; state < States; state++)
+				this.indexes[state] = ActionIndex.build(this.states, data, state, this.terms);
+			for (int i = 0; i < Lookups; i++) {
+				int state = random.nextInt(States), start = this.states[state * ParseState.Size + ParseState.Actions];
+				this.lookups[i * 2] = state;
+				this.lookups[i * 2 + 1] = random.nextInt(10) == 0 ? random.nextInt(this.terms)
+						: data[start + random.nextInt(50) * 3];
+			}
+		}
+	}
+
+	@Benchmark
+	public int scan(Tables tables) {
+		int sum = 0;
+		for (int i = 0; i < tables.lookups.length; i += 2)
+			sum += ActionIndex.scan(tables.states, tables.data, tables.lookups[i], tables.lookups[i + 1]);
+		return sum;
+	}
+
+	@Benchmark
+	public int indexed(Tables tables) {
+		int sum = 0;
+		for (int i = 0; i < tables.lookups.length; i += 2)
+			sum += tables.indexes[tables.lookups[i]].hasAction(tables.lookups[i + 1]);
+		return sum;
+	}
+}
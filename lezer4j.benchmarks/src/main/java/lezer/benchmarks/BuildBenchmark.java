@@ -0,0 +1,67 @@
+package lezer.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import lezer.tree.BuildData;
+import lezer.tree.Tree;
+import lezer.tree.typedarray.TypedArrayAllocator;
+
+/// Measures `Tree.build` (and so `TreeUtils.takeNode`,
+/// `findBufferSize`, `copyToBuffer` and `balanceRange`) over a
+/// synthetic postfix buffer.
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class BuildBenchmark {
+
+	@State(Scope.Benchmark)
+	public static class BuildState {
+
+		@Param({ "10000", "100000" })
+		public int statements;
+
+		/// The kind of flat buffer handed to `BuildData`.
+		@Param({ "array", "intbuffer", "list" })
+		public String buffer;
+
+		/// Where tree buffer content is stored.
+		@Param({ "heap", "direct" })
+		public String allocator;
+
+		/// Whether tree buffers are packed into slabs.
+		@Param({ "false", "true" })
+		public boolean pack;
+
+		public BuildData data;
+
+		@Setup(Level.Trial)
+		public void setup() {
+			this.data = new SyntheticTrees(this.statements, 42).buildData(this.buffer);
+			this.data.setAllocator(this.allocator.equals("direct") ? TypedArrayAllocator.direct : TypedArrayAllocator.heap);
+			this.data.setPackBuffers(this.pack);
+		}
+	}
+
+	@Benchmark
+	public Tree build(BuildState state) {
+		Tree tree = Tree.build(state.data);
+		// Free packed direct slabs right away, as a client would
+		tree.close();
+		return tree;
+	}
+}
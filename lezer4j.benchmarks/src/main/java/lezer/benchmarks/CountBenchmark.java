@@ -0,0 +1,67 @@
+package lezer.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+
+import lezer.tree.NodeType;
+import lezer.tree.Tree;
+
+/// Measures `Tree.count`, over the whole tree and over a
+/// viewport-sized range, on a plain tree and on one built with
+/// `countTypes`, and a visitor walk looking for a type that doesn't
+/// occur, which the counts let it skip entirely.
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CountBenchmark {
+
+	private static final NodeType block = SyntheticTrees.nodeSet.types.get(SyntheticTrees.Block);
+
+	@Benchmark
+	public int count(TreeState state) {
+		return state.tree.count(block);
+	}
+
+	@Benchmark
+	public int countIndexed(TreeState state) {
+		return state.countedTree.count(block);
+	}
+
+	@Benchmark
+	public int countViewport(TreeState state) {
+		return state.tree.count(block, state.viewportPositions[0], state.viewportPositions[TreeState.Positions - 1]);
+	}
+
+	@Benchmark
+	public int countViewportIndexed(TreeState state) {
+		return state.countedTree.count(block, state.viewportPositions[0],
+				state.viewportPositions[TreeState.Positions - 1]);
+	}
+
+	@Benchmark
+	public int visitErrors(TreeState state) {
+		return visitErrors(state.tree);
+	}
+
+	@Benchmark
+	public int visitErrorsIndexed(TreeState state) {
+		return visitErrors(state.countedTree);
+	}
+
+	private static int visitErrors(Tree tree) {
+		int[] count = { 0 };
+		Tree.TreeVisitor[] visitors = new Tree.TreeVisitor[SyntheticTrees.nodeSet.types.size()];
+		visitors[SyntheticTrees.Error] = (type, from, to) -> count[0]++ >= 0;
+		tree.iterate(visitors);
+		return count[0];
+	}
+}
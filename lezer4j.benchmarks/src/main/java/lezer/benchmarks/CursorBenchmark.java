@@ -0,0 +1,92 @@
+package lezer.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import lezer.tree.NodeHandles;
+import lezer.tree.TreeCursor;
+
+/// Measures full pre-order walks of a tree with `TreeCursor.next()`,
+/// both with a new cursor per walk and with a single cursor that is
+/// [reset](#tree.TreeCursor.reset) for every walk, and the same walk
+/// done with [node handles](#tree.NodeHandles).
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class CursorBenchmark {
+
+	private TreeCursor reused;
+
+	@Benchmark
+	public int next(TreeState state) {
+		int count = 0;
+		for (TreeCursor cursor = state.tree.cursor(); cursor.next();)
+			count++;
+		return count;
+	}
+
+	@Benchmark
+	public int nextReused(TreeState state) {
+		int count = 0;
+		TreeCursor cursor = this.reused == null ? this.reused = state.tree.cursor() : this.reused.reset(state.tree);
+		while (cursor.next())
+			count++;
+		return count;
+	}
+
+	@Benchmark
+	public int handles(TreeState state) {
+		NodeHandles handles = state.tree.handles();
+		long top = handles.top(), node = top;
+		int count = 0;
+		walk: for (;;) {
+			long child = handles.firstChild(node);
+			if (child != NodeHandles.None) {
+				node = child;
+				count++;
+				continue;
+			}
+			for (;; node = handles.parent(node)) {
+				if (node == top)
+					break walk;
+				long sibling = handles.nextSibling(node);
+				if (sibling != NodeHandles.None) {
+					node = sibling;
+					count++;
+					break;
+				}
+			}
+		}
+		return count;
+	}
+
+	@Benchmark
+	public int nextFull(TreeState state) {
+		int count = 0;
+		for (TreeCursor cursor = state.tree.fullCursor(); cursor.next();)
+			count++;
+		return count;
+	}
+
+	@Benchmark
+	public int prev(TreeState state) {
+		int count = 0;
+		TreeCursor cursor = state.tree.cursor();
+		cursor.lastChild();
+		while (cursor.prev())
+			count++;
+		return count;
+	}
+}
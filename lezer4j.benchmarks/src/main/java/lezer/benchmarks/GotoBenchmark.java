@@ -0,0 +1,105 @@
+package lezer.benchmarks;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import lezer.parser.CompactGotoTable;
+import lezer.parser.DenseGotoTable;
+import lezer.parser.GotoTable;
+
+/// Measures goto table lookups, as done on every reduce, on the
+/// compact table and on its dense expansion. The table is synthetic,
+/// with a few nonterminals that can be reached from many states, like
+/// expressions, and many that are only reached from a few.
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class GotoBenchmark {
+
+	public static final int Lookups = 1 << 12;
+
+	@State(Scope.Benchmark)
+	public static class Table {
+
+		@Param({ "1500" })
+		public int states;
+
+		public GotoTable compact;
+		public GotoTable dense;
+		/// State and term pairs that have an entry.
+		public int[] lookups = new int[Lookups * 2];
+
+		@Setup(Level.Trial)
+		public void setup() {
+			Random random = new Random(1);
+			int terms = 250;
+			List<Character> groups = new ArrayList<>();
+			List<int[]> entries = new ArrayList<>();
+			char[] offsets = new char[terms];
+			List<Character> all = new ArrayList<>();
+			for (int i = 0; i < this.states; i++)
+				all.add((char) i);
+			for (int term = 0; term < terms; term++) {
+				offsets[term] = (char) (terms + 1 + groups.size());
+				Collections.shuffle(all, random);
+				int used = term % 25 == 0 ? 100 + random.nextInt(200) : 1 + random.nextInt(8), pos = 0;
+				while (pos < used) {
+					int size = Math.min(used - pos, 1 + random.nextInt(8));
+					groups.add((char) (size << 1 | (pos + size == used ? 1 : 0)));
+					groups.add((char) random.nextInt(this.states));
+					for (int i = 0; i < size; i++) {
+						entries.add(new int[] { all.get(pos), term });
+						groups.add(all.get(pos++));
+					}
+				}
+			}
+			char[] table = new char[terms + 1 + groups.size()];
+			table[0] = (char) terms;
+			System.arraycopy(offsets, 0, table, 1, terms);
+			for (int i = 0; i < groups.size(); i++)
+				table[terms + 1 + i] = groups.get(i);
+			this.compact = new CompactGotoTable(table);
+			this.dense = new DenseGotoTable(table);
+			for (int i = 0; i < Lookups; i++) {
+				int[] entry = entries.get(random.nextInt(entries.size()));
+				this.lookups[i * 2] = entry[0];
+				this.lookups[i * 2 + 1] = entry[1];
+			}
+		}
+	}
+
+	private static int lookup(GotoTable table, int[] lookups) {
+		int sum = 0;
+		for (int i = 0; i < lookups.length; i += 2)
+			sum += table.get(lookups[i], lookups[i + 1], false);
+		return sum;
+	}
+
+	@Benchmark
+	public int compact(Table table) {
+		return lookup(table.compact, table.lookups);
+	}
+
+	@Benchmark
+	public int dense(Table table) {
+		return lookup(table.dense, table.lookups);
+	}
+}
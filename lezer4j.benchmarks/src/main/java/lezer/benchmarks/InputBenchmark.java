@@ -0,0 +1,166 @@
+package lezer.benchmarks;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import lezer.tree.ChunkedInput;
+import lezer.tree.Input;
+import lezer.tree.InputChunk;
+import lezer.tree.StreamingInput;
+import lezer.tree.StringInput;
+import lezer.tree.Utf8Input;
+
+/// Measures reading a document sequentially, one code unit at a time
+/// through `Input.get`, the way tokenizers do, for the different
+/// input implementations, or one chunk at a time through
+/// `Input.chunk`, and reading short tokens for keyword lookups from
+/// the chunked and string inputs, as strings and as character
+/// sequence views. The reader benchmarks
+/// include reading the document from a stream, either into a string
+/// first or while scanning it.
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class InputBenchmark {
+
+	@State(Scope.Benchmark)
+	public static class Document {
+
+		@Param({ "1000000" })
+		public int length;
+
+		public String text;
+		public Input string;
+		public Input chunked;
+		public Input utf8;
+
+		@Setup(Level.Trial)
+		public void setup() {
+			StringBuilder text = new StringBuilder();
+			for (int i = 0; text.length() < this.length; i++)
+				text.append("let x").append(i).append(" = \"été\" + ").append(i * 7).append(";\n");
+			this.text = text.substring(0, this.length);
+			this.string = new StringInput(this.text);
+			// Rope-sized leaves
+			List<char[]> chunks = new ArrayList<>();
+			for (int pos = 0; pos < this.length; pos += 512)
+				chunks.add(this.text.substring(pos, Math.min(this.length, pos + 512)).toCharArray());
+			this.chunked = new ChunkedInput(chunks);
+			this.utf8 = new Utf8Input(this.text.getBytes(StandardCharsets.UTF_8));
+		}
+	}
+
+	private static int scan(Input input) {
+		int hash = 0;
+		for (int pos = 0, ch; (ch = input.get(pos)) >= 0; pos++)
+			hash = hash * 31 + ch;
+		return hash;
+	}
+
+	@Benchmark
+	public int stringInput(Document document) {
+		return scan(document.string);
+	}
+
+	@Benchmark
+	public int chunkedInput(Document document) {
+		return scan(document.chunked);
+	}
+
+	@Benchmark
+	public int utf8Input(Document document) {
+		return scan(document.utf8);
+	}
+
+	@Benchmark
+	public int stringInputFromReader(Document document) throws IOException {
+		Reader reader = new StringReader(document.text);
+		StringBuilder text = new StringBuilder();
+		char[] buffer = new char[8192];
+		for (int read; (read = reader.read(buffer)) >= 0;)
+			text.append(buffer, 0, read);
+		return scan(new StringInput(text.toString()));
+	}
+
+	@Benchmark
+	public int streamingInput(Document document) {
+		return scan(new StreamingInput(new StringReader(document.text)));
+	}
+
+	private static int scanChunks(Input input) {
+		int hash = 0;
+		InputChunk chunk = new InputChunk();
+		for (int pos = 0; input.chunk(pos, chunk); pos = chunk.to) {
+			char[] chars = chunk.chars;
+			for (int i = chunk.offset + pos - chunk.from, end = chunk.offset + chunk.to - chunk.from; i < end; i++)
+				hash = hash * 31 + chars[i];
+		}
+		return hash;
+	}
+
+	@Benchmark
+	public int stringInputChunks(Document document) {
+		return scanChunks(document.string);
+	}
+
+	@Benchmark
+	public int chunkedInputChunks(Document document) {
+		return scanChunks(document.chunked);
+	}
+
+	private static int readTokens(Input input, int length) {
+		int keywords = 0;
+		for (int pos = 0; pos + 3 <= length; pos += 3)
+			if ("let".equals(input.read(pos, pos + 3)))
+				keywords++;
+		return keywords;
+	}
+
+	private static int readCharsTokens(Input input, int length) {
+		int keywords = 0;
+		for (int pos = 0; pos + 3 <= length; pos += 3)
+			if ("let".contentEquals(input.readChars(pos, pos + 3)))
+				keywords++;
+		return keywords;
+	}
+
+	@Benchmark
+	public int readTokens(Document document) {
+		return readTokens(document.chunked, document.length);
+	}
+
+	@Benchmark
+	public int readCharsTokens(Document document) {
+		return readCharsTokens(document.chunked, document.length);
+	}
+
+	@Benchmark
+	public int stringReadTokens(Document document) {
+		return readTokens(document.string, document.length);
+	}
+
+	@Benchmark
+	public int stringReadCharsTokens(Document document) {
+		return readCharsTokens(document.string, document.length);
+	}
+}
@@ -0,0 +1,88 @@
+package lezer.benchmarks;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+
+import lezer.tree.NodeType;
+import lezer.tree.Tree;
+
+/// Measures `Tree.iterate` over a whole tree, with handlers and with a
+/// visitor table, and streaming its nodes with `Tree.nodes`,
+/// sequentially and in parallel.
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class IterateBenchmark {
+
+	@Benchmark
+	public int iterate(TreeState state) {
+		int[] count = { 0 };
+		state.tree.iterate((type, from, to) -> {
+			count[0]++;
+			return true;
+		}, null, null, null);
+		return count[0];
+	}
+
+	@Benchmark
+	public int iterateEnterLeave(TreeState state) {
+		int[] count = { 0 };
+		state.tree.iterate((type, from, to) -> {
+			count[0]++;
+			return true;
+		}, (type, from, to) -> {
+			count[0]--;
+			return true;
+		}, null, null);
+		return count[0];
+	}
+
+	@Benchmark
+	public int iterateVisitors(TreeState state) {
+		Counter counter = new Counter();
+		Tree.TreeVisitor[] visitors = new Tree.TreeVisitor[SyntheticTrees.nodeSet.types.size()];
+		Arrays.fill(visitors, counter);
+		state.tree.iterate(visitors);
+		return counter.count;
+	}
+
+	@Benchmark
+	public int iterateVisitorsSelective(TreeState state) {
+		Counter counter = new Counter();
+		Tree.TreeVisitor[] visitors = new Tree.TreeVisitor[SyntheticTrees.nodeSet.types.size()];
+		visitors[SyntheticTrees.Block] = counter;
+		state.tree.iterate(visitors);
+		return counter.count;
+	}
+
+	private static class Counter implements Tree.TreeVisitor {
+
+		int count;
+
+		@Override
+		public boolean enter(NodeType type, int from, int to) {
+			this.count++;
+			return true;
+		}
+	}
+
+	@Benchmark
+	public long stream(TreeState state) {
+		return state.tree.nodes().filter(node -> node.to() > node.from()).count();
+	}
+
+	@Benchmark
+	public long parallelStream(TreeState state) {
+		return state.tree.nodes().parallel().filter(node -> node.to() > node.from()).count();
+	}
+}
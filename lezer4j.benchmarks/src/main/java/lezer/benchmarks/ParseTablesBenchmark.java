@@ -0,0 +1,122 @@
+package lezer.benchmarks;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import lezer.parser.File;
+import lezer.parser.ParseTables;
+import lezer.parser.ParserSpec;
+
+/// Measures loading the tables of a grammar, about the size of the
+/// JavaScript grammar, by decoding the generator's string encoding,
+/// and by reading the binary format from a byte array and from a
+/// memory-mapped file.
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ParseTablesBenchmark {
+
+	@State(Scope.Benchmark)
+	public static class Grammar {
+
+		public ParserSpec spec;
+		public byte[] bytes;
+		public Path file;
+
+		@Setup(Level.Trial)
+		public void setup() throws IOException {
+			Random random = new Random(1);
+			ParserSpec spec = new ParserSpec();
+			spec.version = File.Version;
+			spec.states = encodeArray(random, 1500 * 6, 1 << 20);
+			spec.stateData = encodeArray(random, 24000, 1 << 16);
+			spec.gotoTable = encodeArray(random, 6000, 1500);
+			spec.tokenData = encodeArray(random, 16000, 1 << 16);
+			StringBuilder names = new StringBuilder("⚠");
+			for (int i = 1; i < 250; i++)
+				names.append(" Node").append(i);
+			spec.nodeNames = names.toString();
+			spec.maxTerm = 400;
+			spec.repeatNodeCount = 40;
+			spec.nodeProps = new Object[][] { { -3, 10, 11, 12, "( )" }, { 20, "[", 21, "]" } };
+			spec.skippedNodes = new int[] { 1, 2 };
+			spec.tokenizers = new int[] { 0, ParserSpec.External, 1 };
+			spec.topRules = new LinkedHashMap<>();
+			spec.topRules.put("Script", new int[] { 0, 3 });
+			spec.topRules.put("SingleExpression", new int[] { 1, 4 });
+			this.spec = spec;
+			this.bytes = ParseTables.decode(spec).write();
+			this.file = Files.createTempFile("tables", ".bin");
+			Files.write(this.file, this.bytes);
+		}
+
+		@TearDown(Level.Trial)
+		public void tearDown() throws IOException {
+			Files.delete(this.file);
+		}
+	}
+
+	// The encoding used by lezer-generator
+	private static String encodeArray(Random random, int length, int max) {
+		StringBuilder result = new StringBuilder();
+		encode(result, length);
+		for (int i = 0; i < length; i++)
+			encode(result, random.nextInt(random.nextBoolean() ? 64 : max));
+		return result.toString();
+	}
+
+	private static void encode(StringBuilder out, int value) {
+		if (value == 0xffff) {
+			out.append('~');
+			return;
+		}
+		int at = out.length();
+		for (int first = 46;; first = 0) {
+			int low = value % 46, rest = value - low;
+			int ch = low + first + 32;
+			if (ch >= '"')
+				ch++;
+			if (ch >= '\\')
+				ch++;
+			out.insert(at, (char) ch);
+			if (rest == 0)
+				break;
+			value = rest / 46;
+		}
+	}
+
+	@Benchmark
+	public ParseTables decode(Grammar grammar) {
+		return ParseTables.decode(grammar.spec);
+	}
+
+	@Benchmark
+	public ParseTables readBytes(Grammar grammar) {
+		return ParseTables.read(ByteBuffer.wrap(grammar.bytes));
+	}
+
+	@Benchmark
+	public ParseTables readMapped(Grammar grammar) throws IOException {
+		return ParseTables.read(grammar.file);
+	}
+}
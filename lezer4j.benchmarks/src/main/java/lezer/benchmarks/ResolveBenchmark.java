@@ -0,0 +1,52 @@
+package lezer.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/// Measures `Tree.resolve` at random positions, and resolving the
+/// ascending positions of a viewport, one by one or as a batch with
+/// `Tree.resolveAll`. Every invocation resolves `TreeState.Positions`
+/// positions, so scores are per resolved position.
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ResolveBenchmark {
+
+	@Benchmark
+	@OperationsPerInvocation(TreeState.Positions)
+	public void resolve(TreeState state, Blackhole blackhole) {
+		for (int pos : state.positions)
+			blackhole.consume(state.tree.resolve(pos, 1));
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(TreeState.Positions)
+	public void resolveBefore(TreeState state, Blackhole blackhole) {
+		for (int pos : state.positions)
+			blackhole.consume(state.tree.resolve(pos, -1));
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(TreeState.Positions)
+	public void resolveViewport(TreeState state, Blackhole blackhole) {
+		for (int pos : state.viewportPositions)
+			blackhole.consume(state.tree.resolve(pos, 1));
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(TreeState.Positions)
+	public Object resolveAll(TreeState state) {
+		return state.tree.resolveAll(state.viewportPositions, 1);
+	}
+}
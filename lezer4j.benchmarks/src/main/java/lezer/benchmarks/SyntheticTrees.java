@@ -0,0 +1,132 @@
+package lezer.benchmarks;
+
+import java.nio.IntBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import lezer.tree.BuildData;
+import lezer.tree.NodeSet;
+import lezer.tree.NodeType;
+
+/// Generates large postfix node buffers, shaped like the output of
+/// a real parser, to feed `Tree.build` in the benchmarks.
+///
+/// The synthetic grammar looks like this:
+///
+///     @top Document { statement* }
+///     statement { Statement | Block }
+///     Statement { Identifier Operator Number ";" }
+///     Block { "{" statement* "}" }
+///
+/// where both `statement*` repetitions are stored with anonymous
+/// repeat nodes, the way the parser emits them.
+public class SyntheticTrees {
+
+	public static final int Error = 0, Document = 1, Statement = 2, Block = 3, Identifier = 4, Operator = 5,
+			Number = 6, Semi = 7, OpenBrace = 8, CloseBrace = 9, StatementRepeat = 10, BlockRepeat = 11;
+
+	public static final NodeSet nodeSet;
+
+	static {
+		List<NodeType> types = new ArrayList<>();
+		String[] names = "⚠ Document Statement Block Identifier Operator Number ; { }".split(" ");
+		for (int i = 0; i < names.length; i++)
+			types.add(NodeType.define(i, names[i], null, i == Document, i == Error, null));
+		types.add(NodeType.define(StatementRepeat));
+		types.add(NodeType.define(BlockRepeat));
+		nodeSet = new NodeSet(types);
+	}
+
+	private final Random random;
+	private int[] data;
+	private int size;
+	private int pos;
+
+	/// Generate a document holding `statements` top-level
+	/// statements. The same `seed` always produces the same buffer.
+	public SyntheticTrees(int statements, long seed) {
+		this.random = new Random(seed);
+		this.data = new int[statements * 32];
+		statements(statements, StatementRepeat, 0);
+		this.data = Arrays.copyOf(this.data, this.size);
+	}
+
+	/// The generated buffer, four values per node.
+	public int[] buffer() {
+		return this.data;
+	}
+
+	/// The length of the synthetic document.
+	public int length() {
+		return this.pos;
+	}
+
+	/// The buffer as the boxed list accepted by `BuildData`.
+	public List<Integer> boxedBuffer() {
+		List<Integer> result = new ArrayList<>(this.data.length);
+		for (int value : this.data)
+			result.add(value);
+		return result;
+	}
+
+	/// Build parameters for a tree over the generated buffer, passed
+	/// as an `"array"`, an `"intbuffer"` or a boxed `"list"`.
+	public BuildData buildData(String kind) {
+		BuildData data;
+		if (kind.equals("list"))
+			data = new BuildData(boxedBuffer(), nodeSet);
+		else if (kind.equals("intbuffer"))
+			data = new BuildData(IntBuffer.wrap(this.data), nodeSet);
+		else
+			data = new BuildData(this.data, nodeSet);
+		data.setTopID(Document);
+		data.setLength(this.pos);
+		data.setMinRepeatType(StatementRepeat);
+		return data;
+	}
+
+	private void add(int id, int start, int end, int size) {
+		if (this.size + 4 > this.data.length)
+			this.data = Arrays.copyOf(this.data, this.data.length * 2 + 4);
+		this.data[this.size++] = id;
+		this.data[this.size++] = start;
+		this.data[this.size++] = end;
+		this.data[this.size++] = size;
+	}
+
+	private void leaf(int id, int length) {
+		add(id, this.pos, this.pos + length, 4);
+		this.pos += length;
+	}
+
+	private void statements(int count, int repeat, int depth) {
+		int bufStart = this.size, start = this.pos;
+		for (int i = 0; i < count; i++) {
+			if (depth < 4 && this.random.nextInt(8) == 0)
+				block(depth + 1);
+			else
+				statement();
+			if (i > 0)
+				add(repeat, start, this.pos, (this.size + 4) - bufStart);
+		}
+	}
+
+	private void statement() {
+		int bufStart = this.size, start = this.pos;
+		leaf(Identifier, 1 + this.random.nextInt(8));
+		leaf(Operator, 1);
+		leaf(Number, 1 + this.random.nextInt(4));
+		leaf(Semi, 1);
+		add(Statement, start, this.pos, (this.size + 4) - bufStart);
+	}
+
+	private void block(int depth) {
+		int bufStart = this.size, start = this.pos;
+		leaf(OpenBrace, 1);
+		statements(1 + this.random.nextInt(20), BlockRepeat, depth);
+		leaf(CloseBrace, 1);
+		add(Block, start, this.pos, (this.size + 4) - bufStart);
+	}
+}
@@ -0,0 +1,49 @@
+package lezer.benchmarks;
+
+import java.util.Random;
+
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import lezer.tree.BuildData;
+import lezer.tree.Tree;
+
+/// Shared benchmark state: a synthetic buffer, the tree built from
+/// it (plain, and with node type counts), a fixed set of random
+/// positions in that tree, and a run of ascending positions covering
+/// a viewport-sized region of it.
+@State(Scope.Benchmark)
+public class TreeState {
+
+	/// The amount of resolve calls done per benchmark invocation.
+	public static final int Positions = 1024;
+
+	@Param({ "10000", "100000" })
+	public int statements;
+
+	public SyntheticTrees source;
+	public Tree tree;
+	public Tree countedTree;
+	public int[] positions;
+	public int[] viewportPositions;
+
+	@Setup(Level.Trial)
+	public void setup() {
+		this.source = new SyntheticTrees(this.statements, 42);
+		this.tree = Tree.build(this.source.buildData("array"));
+		BuildData counted = this.source.buildData("array");
+		counted.setCountTypes(true);
+		this.countedTree = Tree.build(counted);
+		Random random = new Random(7);
+		this.positions = new int[Positions];
+		for (int i = 0; i < Positions; i++)
+			this.positions[i] = random.nextInt(this.source.length() + 1);
+		this.viewportPositions = new int[Positions];
+		int start = random.nextInt(Math.max(1, this.source.length() - Positions * 3));
+		for (int i = 0; i < Positions; i++)
+			this.viewportPositions[i] = Math.min(start + i * 3, this.source.length());
+	}
+}
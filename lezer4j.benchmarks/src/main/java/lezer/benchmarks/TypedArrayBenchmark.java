@@ -0,0 +1,90 @@
+package lezer.benchmarks;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import lezer.tree.typedarray.TypedArrayAllocator;
+import lezer.tree.typedarray.Uint16Array;
+
+/// Measures reading a `Uint16Array` the way tree buffers do, through
+/// `get`, against reading a plain `short[]`, to check that the call
+/// and the subarray offset are optimized away. With `profile` set to
+/// `mixed`, the read loop has seen both the heap and the direct
+/// implementation before it is measured, as when an application uses
+/// both allocators.
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TypedArrayBenchmark {
+
+	public static final int Length = 1 << 16;
+
+	@State(Scope.Benchmark)
+	public static class Arrays {
+
+		@Param({ "heap", "mixed" })
+		public String profile;
+
+		public short[] raw = new short[Length];
+		/// A subarray, as handed out by an arena, so reads add an offset.
+		public Uint16Array heap;
+		public Uint16Array direct;
+
+		@Setup(Level.Trial)
+		public void setup() {
+			Random random = new Random(1);
+			for (int i = 0; i < Length; i++)
+				this.raw[i] = (short) random.nextInt(1 << 16);
+			this.heap = TypedArrayAllocator.heap.allocateUint16(Length + 7).subarray(7, Length + 7);
+			this.direct = TypedArrayAllocator.direct.allocateUint16(Length);
+			for (int i = 0; i < Length; i++) {
+				this.heap.set(i, this.raw[i]);
+				this.direct.set(i, this.raw[i]);
+			}
+			if (this.profile.equals("mixed"))
+				for (int i = 0; i < 2000; i++)
+					sum(this.direct);
+		}
+	}
+
+	private static int sum(Uint16Array array) {
+		int sum = 0;
+		for (int i = 0; i < array.length; i++)
+			sum += array.get(i);
+		return sum;
+	}
+
+	@Benchmark
+	public int raw(Arrays arrays) {
+		short[] raw = arrays.raw;
+		int sum = 0;
+		for (int i = 0; i < raw.length; i++)
+			sum += raw[i] & 0xffff;
+		return sum;
+	}
+
+	@Benchmark
+	public int heap(Arrays arrays) {
+		return sum(arrays.heap);
+	}
+
+	@Benchmark
+	public int direct(Arrays arrays) {
+		return sum(arrays.direct);
+	}
+}
@@ -0,0 +1,221 @@
+package lezer.parser;
+
+import java.util.Arrays;
+
+/// An index of the actions of a single parse state by terminal, so
+/// that finding the actions for a token is a direct probe rather than
+/// a scan over the state's action and skip sequences. Terminals are
+/// looked up in a dense array when the grammar has at most
+/// [`DenseLimit`](#lezer.ActionIndex^DenseLimit) terms, and in an
+/// open-addressing hash table otherwise.
+///
+/// Parsers build these lazily, for the states they actually visit.
+public final class ActionIndex {
+
+	/// The highest term count for which terminals are looked up in a
+	/// dense array.
+	public static final int DenseLimit = 256;
+
+	/// For dense lookups, the slot of each terminal plus one, or zero.
+	private final char[] dense;
+	/// For hashed lookups, terminals plus one, or zero for empty
+	/// entries, and their slots.
+	private final int[] keys;
+	private final int[] slots;
+	/// The actions of every slot, those from the action sequence followed
+	/// by those from the skip sequence. `bounds` holds, for each slot,
+	/// the start of both parts, followed by the end of the last slot.
+	private final int[] actions;
+	private final int[] bounds;
+	/// The result of [`hasAction`](#lezer.ActionIndex.hasAction) for
+	/// each slot, and for terminals without a slot.
+	private final int[] first;
+	private final int fallback;
+	/// The actions given by `Seq.Other` at the end of the action and
+	/// skip sequences, or 0.
+	private final int otherAction, otherSkip;
+
+	private ActionIndex(char[] dense, int[] keys, int[] slots, int[] actions, int[] bounds, int[] first, int fallback,
+			int otherAction, int otherSkip) {
+		this.dense = dense;
+		this.keys = keys;
+		this.slots = slots;
+		this.actions = actions;
+		this.bounds = bounds;
+		this.first = first;
+		this.fallback = fallback;
+		this.otherAction = otherAction;
+		this.otherSkip = otherSkip;
+	}
+
+	/// Index the actions of `state`, in a parser with the given amount
+	/// of terms.
+	public static ActionIndex build(int[] states, char[] data, int state, int termCount) {
+		// Gather the entries of both sequences, in the order a scan
+		// finds them
+		int[] entries = new int[24];
+		int size = 0, otherAction = 0, otherSkip = 0;
+		for (int set = 0; set < 2; set++) {
+			for (int i = states[state * ParseState.Size + (set > 0 ? ParseState.Skip : ParseState.Actions)];; i += 3) {
+				if (data[i] == Seq.End) {
+					if (data[i + 1] == Seq.Next) {
+						i = pair(data, i + 2);
+					} else {
+						if (data[i + 1] == Seq.Other) {
+							if (set > 0)
+								otherSkip = pair(data, i + 2);
+							else
+								otherAction = pair(data, i + 2);
+						}
+						break;
+					}
+				}
+				if (size + 3 > entries.length)
+					entries = Arrays.copyOf(entries, entries.length << 1);
+				entries[size++] = set;
+				entries[size++] = data[i];
+				entries[size++] = pair(data, i + 1);
+			}
+		}
+
+		int count = size / 3;
+		boolean dense = termCount <= DenseLimit;
+		char[] denseSlots = dense ? new char[termCount] : null;
+		int capacity = Integer.highestOneBit(Math.max(count, 1) * 2 - 1) << 1;
+		int[] keys = dense ? null : new int[capacity], slots = dense ? null : new int[capacity];
+		// Assign slots in order of first appearance, and count the
+		// actions of each part
+		int[] entrySlots = new int[count], sizes = new int[count * 2];
+		int slotCount = 0;
+		for (int e = 0; e < count; e++) {
+			int term = entries[e * 3 + 1];
+			int slot = dense ? denseSlots[term] - 1 : find(keys, slots, term);
+			if (slot < 0) {
+				slot = slotCount++;
+				if (dense)
+					denseSlots[term] = (char) (slot + 1);
+				else
+					insert(keys, slots, term, slot);
+			}
+			entrySlots[e] = slot;
+			sizes[slot * 2 + entries[e * 3]]++;
+		}
+		int[] bounds = new int[slotCount * 2 + 1];
+		for (int slot = 0, pos = 0; slot < slotCount; slot++) {
+			bounds[slot * 2] = pos;
+			bounds[slot * 2 + 1] = pos += sizes[slot * 2];
+			pos += sizes[slot * 2 + 1];
+			bounds[slot * 2 + 2] = pos;
+		}
+		int[] actions = new int[count], fill = new int[slotCount * 2];
+		for (int slot = 0; slot < slotCount; slot++) {
+			fill[slot * 2] = bounds[slot * 2];
+			fill[slot * 2 + 1] = bounds[slot * 2 + 1];
+		}
+		// Replay the scan `hasAction` does, where an `Err` entry or a
+		// `Seq.Other` matches every terminal that hasn't matched yet
+		int[] first = new int[slotCount];
+		int wildcard = 0;
+		boolean skip = false;
+		for (int e = 0; e < count; e++) {
+			int set = entries[e * 3], term = entries[e * 3 + 1], action = entries[e * 3 + 2], slot = entrySlots[e];
+			actions[fill[slot * 2 + set]++] = action;
+			if (set > 0 && !skip) {
+				skip = true;
+				if (wildcard == 0)
+					wildcard = otherAction;
+			}
+			if (first[slot] == 0)
+				first[slot] = wildcard != 0 ? wildcard : action;
+			if (term == Term.Err && wildcard == 0)
+				wildcard = action;
+		}
+		if (wildcard == 0)
+			wildcard = skip ? otherSkip : otherAction != 0 ? otherAction : otherSkip;
+		return new ActionIndex(denseSlots, keys, slots, actions, bounds, first, wildcard, otherAction, otherSkip);
+	}
+
+	private static int find(int[] keys, int[] slots, int term) {
+		int mask = keys.length - 1;
+		for (int i = hash(term) & mask;; i = (i + 1) & mask) {
+			int key = keys[i];
+			if (key == term + 1)
+				return slots[i];
+			if (key == 0)
+				return -1;
+		}
+	}
+
+	private static void insert(int[] keys, int[] slots, int term, int slot) {
+		int mask = keys.length - 1, i = hash(term) & mask;
+		while (keys[i] != 0)
+			i = (i + 1) & mask;
+		keys[i] = term + 1;
+		slots[i] = slot;
+	}
+
+	private static int hash(int term) {
+		return term * 0x9e3779b9 >>> 16;
+	}
+
+	static int pair(char[] data, int off) {
+		return data[off] | (data[off + 1] << 16);
+	}
+
+	/// The slot holding the actions for `terminal`, or -1 when the state
+	/// has no entries for it.
+	public int slot(int terminal) {
+		if (this.dense != null)
+			return terminal < this.dense.length ? this.dense[terminal] - 1 : -1;
+		return find(this.keys, this.slots, terminal);
+	}
+
+	/// The range of indices passed to [`action`](#lezer.ActionIndex.action)
+	/// that hold the actions of `slot` in the action sequence (`set` 0)
+	/// or the skip sequence (`set` 1), in sequence order.
+	public int start(int slot, int set) {
+		return this.bounds[slot * 2 + set];
+	}
+
+	public int end(int slot, int set) {
+		return this.bounds[slot * 2 + set + 1];
+	}
+
+	public int action(int index) {
+		return this.actions[index];
+	}
+
+	/// The action that the action (`set` 0) or skip (`set` 1) sequence
+	/// applies to any terminal through `Seq.Other`, or 0.
+	public int other(int set) {
+		return set > 0 ? this.otherSkip : this.otherAction;
+	}
+
+	/// The first action that applies to `terminal`, counting `Err`
+	/// entries and `Seq.Other` as matching any terminal, or 0. This is
+	/// the result of a [`scan`](#lezer.ActionIndex^scan).
+	public int hasAction(int terminal) {
+		int slot = this.slot(terminal);
+		return slot < 0 ? this.fallback : this.first[slot];
+	}
+
+	/// Find the first action that applies to `terminal` in `state` by
+	/// scanning its action and skip sequences, without an index.
+	public static int scan(int[] states, char[] data, int state, int terminal) {
+		for (int set = 0; set < 2; set++) {
+			for (int i = states[state * ParseState.Size + (set > 0 ? ParseState.Skip : ParseState.Actions)], next;; i += 3) {
+				if ((next = data[i]) == Seq.End) {
+					if (data[i + 1] == Seq.Next)
+						next = data[i = pair(data, i + 2)];
+					else if (data[i + 1] == Seq.Other)
+						return pair(data, i + 2);
+					else
+						break;
+				}
+				if (next == terminal || next == Term.Err)
+					return pair(data, i + 1);
+			}
+		}
+		return 0;
+	}
+}
@@ -0,0 +1,39 @@
+package lezer.parser;
+
+/// A [goto table](#lezer.GotoTable) that reads the generator's
+/// format directly. For each term it holds groups of states that go to
+/// the same target, which a lookup scans in order, so lookups take
+/// time linear in the amount of states that have an entry for the
+/// term. This is the smallest representation.
+public final class CompactGotoTable extends GotoTable {
+
+	private final char[] table;
+
+	/// Wrap a goto table in the format computed by lezer-generator.
+	public CompactGotoTable(char[] table) {
+		this.table = table;
+	}
+
+	@Override
+	public int get(int state, int term, boolean loose) {
+		char[] table = this.table;
+		if (term >= table[0])
+			return -1;
+		for (int pos = table[term + 1];;) {
+			int groupTag = table[pos++], last = groupTag & 1;
+			int target = table[pos++];
+			if (last != 0 && loose)
+				return target;
+			for (int end = pos + (groupTag >> 1); pos < end; pos++)
+				if (table[pos] == state)
+					return target;
+			if (last != 0)
+				return -1;
+		}
+	}
+
+	@Override
+	public long memory() {
+		return 16 + (long) this.table.length * 2;
+	}
+}
@@ -0,0 +1,70 @@
+package lezer.parser;
+
+/// Decoding of the number arrays in the parse tables written by
+/// lezer-generator. See lezer-generator/src/encode.ts for comments
+/// about the encoding used here.
+public class Decode {
+
+	static final int BigValCode = 126;
+	static final int BigVal = 0xffff;
+	static final int Start = 32;
+	static final int Gap1 = 34; // '"'
+	static final int Gap2 = 92; // '\\'
+	static final int Base = 46; // (126 - 32 - 2) / 2
+
+	/// Reads the values of an encoded array one by one. The first one
+	/// is the length of the array.
+	private static final class Values {
+
+		private final String input;
+		private int pos = 0;
+
+		Values(String input) {
+			this.input = input;
+		}
+
+		boolean hasNext() {
+			return this.pos < this.input.length();
+		}
+
+		long next() {
+			long value = 0;
+			for (;;) {
+				int next = this.input.charAt(this.pos++);
+				if (next == BigValCode)
+					return BigVal;
+				if (next >= Gap2)
+					next--;
+				if (next >= Gap1)
+					next--;
+				int digit = next - Start;
+				if (digit >= Base)
+					return value + digit - Base;
+				value = (value + digit) * Base;
+			}
+		}
+	}
+
+	/// Decode an array of 16-bit values. Values are unsigned, so they
+	/// are returned as `char`s.
+	public static char[] decodeArray(String input) {
+		Values values = new Values(input);
+		if (!values.hasNext())
+			return new char[0];
+		char[] array = new char[(int) values.next()];
+		for (int out = 0; values.hasNext();)
+			array[out++] = (char) values.next();
+		return array;
+	}
+
+	/// Decode an array of 32-bit values, as used for the parse states.
+	public static int[] decodeIntArray(String input) {
+		Values values = new Values(input);
+		if (!values.hasNext())
+			return new int[0];
+		int[] array = new int[(int) values.next()];
+		for (int out = 0; values.hasNext();)
+			array[out++] = (int) values.next();
+		return array;
+	}
+}
@@ -0,0 +1,93 @@
+package lezer.parser;
+
+import java.util.Arrays;
+
+import lezer.tree.RangeError;
+
+/// A [goto table](#lezer.GotoTable) expanded into a row per term,
+/// indexed by state, so that lookups take constant time. Each row only
+/// covers the range between the lowest and highest state that has an
+/// entry for the term, which keeps the table at a fraction of the
+/// size of a full terms × states matrix, but it is still several
+/// times bigger than the [compact](#lezer.CompactGotoTable) form. Use
+/// [`memory`](#lezer.GotoTable.memory) to see the cost for a given
+/// grammar.
+public final class DenseGotoTable extends GotoTable {
+
+	/// Marks states without an entry in a row.
+	private static final char None = 0xffff;
+
+	/// The rows of all terms, one after the other.
+	private final char[] entries;
+	/// For each term, the offset of its row in `entries`, the first state
+	/// it covers, its length and its default target, or -1.
+	private final int[] rowOffset;
+	private final int[] rowStart;
+	private final int[] rowLength;
+	private final int[] fallback;
+
+	/// Expand a goto table in the format computed by lezer-generator.
+	/// Throws a `RangeError` when an entry targets state 0xffff, which
+	/// the dense table uses to mark missing entries.
+	public DenseGotoTable(char[] table) {
+		int terms = table[0];
+		this.rowOffset = new int[terms];
+		this.rowStart = new int[terms];
+		this.rowLength = new int[terms];
+		this.fallback = new int[terms];
+		int size = 0;
+		for (int term = 0; term < terms; term++) {
+			int min = Integer.MAX_VALUE, max = -1;
+			this.fallback[term] = -1;
+			for (int pos = table[term + 1];;) {
+				int groupTag = table[pos++], target = table[pos++];
+				if (target == None && groupTag >> 1 > 0)
+					throw new RangeError("Goto target " + target + " can't be stored in a dense goto table");
+				for (int end = pos + (groupTag >> 1); pos < end; pos++) {
+					min = Math.min(min, table[pos]);
+					max = Math.max(max, table[pos]);
+				}
+				if ((groupTag & 1) != 0) {
+					this.fallback[term] = target;
+					break;
+				}
+			}
+			this.rowOffset[term] = size;
+			this.rowStart[term] = max < 0 ? 0 : min;
+			this.rowLength[term] = max < 0 ? 0 : max - min + 1;
+			size += this.rowLength[term];
+		}
+		this.entries = new char[size];
+		Arrays.fill(this.entries, None);
+		for (int term = 0; term < terms; term++) {
+			int offset = this.rowOffset[term] - this.rowStart[term];
+			for (int pos = table[term + 1];;) {
+				int groupTag = table[pos++], target = table[pos++];
+				// The first group holding a state wins, as in a scan
+				for (int end = pos + (groupTag >> 1); pos < end; pos++)
+					if (this.entries[offset + table[pos]] == None)
+						this.entries[offset + table[pos]] = (char) target;
+				if ((groupTag & 1) != 0)
+					break;
+			}
+		}
+	}
+
+	@Override
+	public int get(int state, int term, boolean loose) {
+		if (term >= this.rowOffset.length)
+			return -1;
+		int index = state - this.rowStart[term];
+		if (index >= 0 && index < this.rowLength[term]) {
+			int target = this.entries[this.rowOffset[term] + index];
+			if (target != None)
+				return target;
+		}
+		return loose ? this.fallback[term] : -1;
+	}
+
+	@Override
+	public long memory() {
+		return 16 + (long) this.entries.length * 2 + 4 * (16 + (long) this.rowOffset.length * 4);
+	}
+}
@@ -0,0 +1,8 @@
+package lezer.parser;
+
+//Note: this is duplicated in lezer-generator/src/constants.ts
+public class File {
+	/// The version of the parse table format written by the generator
+	/// that this runtime understands.
+	public static final int Version = 13;
+}
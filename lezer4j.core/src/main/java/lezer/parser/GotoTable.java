@@ -0,0 +1,18 @@
+package lezer.parser;
+
+/// Looks up entries in a parser's goto table, which maps a state and
+/// a nonterminal term to the state to go to after reducing that term.
+/// The [compact](#lezer.CompactGotoTable) form reads the table as
+/// written by lezer-generator, the [dense](#lezer.DenseGotoTable) one
+/// expands it for constant-time lookups. Which one a parser uses is
+/// set through [`ParserConfig.denseGoto`](#lezer.ParserConfig.denseGoto).
+public abstract class GotoTable {
+
+	/// The state to go to from `state` after reducing `term`, or -1 if
+	/// there is none. When `loose` is true, the term's default target is
+	/// returned for states that have no entry.
+	public abstract int get(int state, int term, boolean loose);
+
+	/// The approximate amount of memory used by the table, in bytes.
+	public abstract long memory();
+}
@@ -0,0 +1,51 @@
+package lezer.parser;
+
+import java.util.Map;
+
+/// A table from strings to term ids, which specializers use to look up
+/// the content of tokens. It can be queried with any character
+/// sequence, such as the views returned by
+/// [`readChars`](#tree.Input.readChars), without turning it into a
+/// string, which a map with string keys can't do, since strings are
+/// only ever equal to other strings.
+public final class KeywordTable {
+
+	/// The keys in an open-addressing hash table, with null for empty
+	/// entries, and their values.
+	private final String[] keys;
+	private final int[] values;
+
+	public KeywordTable(Map<String, Integer> entries) {
+		int capacity = Integer.highestOneBit(Math.max(entries.size(), 1) * 2 - 1) << 1;
+		this.keys = new String[capacity];
+		this.values = new int[capacity];
+		int mask = capacity - 1;
+		for (Map.Entry<String, Integer> entry : entries.entrySet()) {
+			int i = mix(entry.getKey().hashCode()) & mask;
+			while (this.keys[i] != null)
+				i = (i + 1) & mask;
+			this.keys[i] = entry.getKey();
+			this.values[i] = entry.getValue();
+		}
+	}
+
+	private static int mix(int hash) {
+		return hash ^ (hash >>> 16);
+	}
+
+	/// The id stored for the content of `value`, or -1 if there is none.
+	public int get(CharSequence value) {
+		// The same hash as `String.hashCode`
+		int hash = 0, length = value.length();
+		for (int i = 0; i < length; i++)
+			hash = 31 * hash + value.charAt(i);
+		int mask = this.keys.length - 1;
+		for (int i = mix(hash) & mask;; i = (i + 1) & mask) {
+			String key = this.keys[i];
+			if (key == null)
+				return -1;
+			if (key.length() == length && key.hashCode() == hash && key.contentEquals(value))
+				return this.values[i];
+		}
+	}
+}
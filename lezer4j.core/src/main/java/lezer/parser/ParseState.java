@@ -0,0 +1,13 @@
+package lezer.parser;
+
+//Note: this is duplicated in lezer-generator/src/constants.ts
+/// The slots of a state in a parser's state table.
+public class ParseState {
+	public static final int Flags = 0;
+	public static final int Actions = 1;
+	public static final int Skip = 2;
+	public static final int TokenizerMask = 3;
+	public static final int DefaultReduce = 4;
+	public static final int ForcedReduce = 5;
+	public static final int Size = 6;
+}
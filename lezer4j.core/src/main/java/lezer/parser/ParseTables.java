@@ -0,0 +1,391 @@
+package lezer.parser;
+
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import lezer.tree.NodeFlag;
+import lezer.tree.NodeSet;
+import lezer.tree.NodeType;
+import lezer.tree.RangeError;
+
+/// The data of a parser, fully decoded: the parse states, the data
+/// they point into, the goto table, the token groups, the node types
+/// and the dialects. This is the work the parser constructor does on
+/// a [spec](#lezer.ParserSpec), done once, and it can be
+/// [written](#lezer.ParseTables.write) to a versioned binary file,
+/// which is [read](#lezer.ParseTables^read) back with a few bulk
+/// copies, so that loading many grammars doesn't decode them all
+/// again on every startup.
+///
+/// Tables of 16-bit values are stored as `char[]`, which is Java's
+/// unsigned 16-bit type.
+public class ParseTables {
+
+	/// The first four bytes of a parse table file, "LZPT".
+	public static final int Magic = 0x4c5a5054;
+	/// The version of the binary format. Files are also tagged with the
+	/// [parse table version](#lezer.File^Version) of their content.
+	public static final int FormatVersion = 1;
+
+	/// The parse states, with
+	/// [`ParseState.Size`](#lezer.ParseState^Size) slots each.
+	public final int[] states;
+	/// The blob of data that the parse states point into.
+	public final char[] data;
+	/// The goto table, in the format computed by lezer-generator.
+	public final char[] gotoTable;
+	/// The token groups of the grammar's tokenizers.
+	public final char[] tokenData;
+	/// The name of each node type, by id, with empty names for the
+	/// repeat terms.
+	public final String[] nodeNames;
+	/// The [flags](#tree.NodeFlag) of each node type, by id.
+	public final int[] nodeFlags;
+	/// The raw values of each node prop, by node id, or null for nodes
+	/// that don't have the prop. Props are in the order they were given
+	/// in the spec.
+	public final String[][] nodeProps;
+	public final int minRepeatTerm;
+	public final int maxTerm;
+	/// For each tokenizer, the offset of its token group in
+	/// `tokenData`, or [`External`](#lezer.ParserSpec^External).
+	public final int[] tokenizers;
+	public final Map<String, int[]> topRules;
+	public final String[] nestedNames;
+	public final char[][] nestedEnds;
+	public final int[] nestedPlaceholders;
+	public final Map<String, Integer> dialects;
+	/// Null if there are no dynamic precedences.
+	public final Map<Integer, Integer> dynamicPrecedences;
+	public final char[] specialized;
+	public final int tokenPrec;
+	/// Null if the grammar wasn't generated with term names.
+	public final Map<Integer, String> termNames;
+
+	private ParseTables(int[] states, char[] data, char[] gotoTable, char[] tokenData, String[] nodeNames,
+			int[] nodeFlags, String[][] nodeProps, int minRepeatTerm, int maxTerm, int[] tokenizers,
+			Map<String, int[]> topRules, String[] nestedNames, char[][] nestedEnds, int[] nestedPlaceholders,
+			Map<String, Integer> dialects, Map<Integer, Integer> dynamicPrecedences, char[] specialized, int tokenPrec,
+			Map<Integer, String> termNames) {
+		this.states = states;
+		this.data = data;
+		this.gotoTable = gotoTable;
+		this.tokenData = tokenData;
+		this.nodeNames = nodeNames;
+		this.nodeFlags = nodeFlags;
+		this.nodeProps = nodeProps;
+		this.minRepeatTerm = minRepeatTerm;
+		this.maxTerm = maxTerm;
+		this.tokenizers = tokenizers;
+		this.topRules = topRules;
+		this.nestedNames = nestedNames;
+		this.nestedEnds = nestedEnds;
+		this.nestedPlaceholders = nestedPlaceholders;
+		this.dialects = dialects;
+		this.dynamicPrecedences = dynamicPrecedences;
+		this.specialized = specialized;
+		this.tokenPrec = tokenPrec;
+		this.termNames = termNames;
+	}
+
+	/// Decode the string-encoded tables in a spec.
+	public static ParseTables decode(ParserSpec spec) {
+		if (spec.version != File.Version)
+			throw new RangeError("Parser version (" + spec.version + ") doesn't match runtime version (" + File.Version + ")");
+		String[] named = spec.nodeNames.split(" ");
+		int minRepeatTerm = named.length;
+		String[] nodeNames = Arrays.copyOf(named, minRepeatTerm + spec.repeatNodeCount);
+		int[] nodeFlags = new int[nodeNames.length];
+		for (int i = minRepeatTerm; i < nodeNames.length; i++) {
+			nodeNames[i] = "";
+			nodeFlags[i] = NodeFlag.Anonymous;
+		}
+		nodeFlags[0] |= NodeFlag.Error;
+		for (int[] rule : spec.topRules.values())
+			nodeFlags[rule[1]] |= NodeFlag.Top;
+		if (spec.skippedNodes != null)
+			for (int id : spec.skippedNodes)
+				nodeFlags[id] |= NodeFlag.Skipped;
+
+		Object[][] propSpecs = spec.nodeProps == null ? new Object[0][] : spec.nodeProps;
+		String[][] nodeProps = new String[propSpecs.length][];
+		for (int p = 0; p < propSpecs.length; p++) {
+			Object[] propSpec = propSpecs[p];
+			String[] values = nodeProps[p] = new String[nodeNames.length];
+			for (int i = 0; i < propSpec.length;) {
+				int next = (Integer) propSpec[i++];
+				if (next >= 0) {
+					values[next] = String.valueOf(propSpec[i++]);
+				} else {
+					String value = String.valueOf(propSpec[i + -next]);
+					for (int j = -next; j > 0; j--)
+						values[(Integer) propSpec[i++]] = value;
+					i++;
+				}
+			}
+		}
+
+		int nested = spec.nestedNames == null ? 0 : spec.nestedNames.length;
+		char[][] nestedEnds = new char[nested][];
+		for (int i = 0; i < nested; i++)
+			nestedEnds[i] = Decode.decodeArray(spec.nestedEnds[i]);
+		char[] specialized = new char[spec.specialized == null ? 0 : spec.specialized.length];
+		for (int i = 0; i < specialized.length; i++)
+			specialized[i] = (char) spec.specialized[i];
+
+		return new ParseTables(Decode.decodeIntArray(spec.states), Decode.decodeArray(spec.stateData),
+				Decode.decodeArray(spec.gotoTable), Decode.decodeArray(spec.tokenData), nodeNames, nodeFlags, nodeProps,
+				minRepeatTerm, spec.maxTerm, spec.tokenizers.clone(), new LinkedHashMap<>(spec.topRules),
+				nested == 0 ? new String[0] : spec.nestedNames.clone(), nestedEnds,
+				nested == 0 ? new int[0] : spec.nestedPlaceholders.clone(),
+				spec.dialects == null ? new LinkedHashMap<>() : new LinkedHashMap<>(spec.dialects),
+				spec.dynamicPrecedences == null ? null : new LinkedHashMap<>(spec.dynamicPrecedences), specialized,
+				spec.tokenPrec, spec.termNames == null ? null : new LinkedHashMap<>(spec.termNames));
+	}
+
+	/// Create the node set described by these tables. Node props aren't
+	/// added, since their values need the prop objects to be
+	/// deserialized.
+	public NodeSet nodeSet() {
+		List<NodeType> types = new ArrayList<>(this.nodeNames.length);
+		for (int i = 0; i < this.nodeNames.length; i++) {
+			int flags = this.nodeFlags[i];
+			types.add(NodeType.define(i, (flags & NodeFlag.Anonymous) > 0 ? null : this.nodeNames[i], null,
+					(flags & NodeFlag.Top) > 0, (flags & NodeFlag.Error) > 0, (flags & NodeFlag.Skipped) > 0));
+		}
+		return new NodeSet(types);
+	}
+
+	/// Encode the tables in the binary format. Values are stored
+	/// little-endian, with every table prefixed by its length, so that
+	/// it can be copied out in bulk.
+	public byte[] write() {
+		Output out = new Output();
+		out.putInt(Magic);
+		out.putInt(FormatVersion);
+		out.putInt(File.Version);
+		out.putInts(this.states);
+		out.putChars(this.data);
+		out.putChars(this.gotoTable);
+		out.putChars(this.tokenData);
+		out.putInt(this.nodeNames.length);
+		for (String name : this.nodeNames)
+			out.putString(name);
+		out.putInts(this.nodeFlags);
+		out.putInt(this.nodeProps.length);
+		for (String[] values : this.nodeProps) {
+			int count = 0;
+			for (String value : values)
+				if (value != null)
+					count++;
+			out.putInt(count);
+			for (int id = 0; id < values.length; id++) {
+				if (values[id] != null) {
+					out.putInt(id);
+					out.putString(values[id]);
+				}
+			}
+		}
+		out.putInt(this.minRepeatTerm);
+		out.putInt(this.maxTerm);
+		out.putInts(this.tokenizers);
+		out.putInt(this.topRules.size());
+		for (Map.Entry<String, int[]> rule : this.topRules.entrySet()) {
+			out.putString(rule.getKey());
+			out.putInt(rule.getValue()[0]);
+			out.putInt(rule.getValue()[1]);
+		}
+		out.putInt(this.nestedNames.length);
+		for (int i = 0; i < this.nestedNames.length; i++) {
+			out.putString(this.nestedNames[i]);
+			out.putChars(this.nestedEnds[i]);
+			out.putInt(this.nestedPlaceholders[i]);
+		}
+		out.putInt(this.dialects.size());
+		for (Map.Entry<String, Integer> dialect : this.dialects.entrySet()) {
+			out.putString(dialect.getKey());
+			out.putInt(dialect.getValue());
+		}
+		if (this.dynamicPrecedences == null) {
+			out.putInt(-1);
+		} else {
+			out.putInt(this.dynamicPrecedences.size());
+			for (Map.Entry<Integer, Integer> prec : this.dynamicPrecedences.entrySet()) {
+				out.putInt(prec.getKey());
+				out.putInt(prec.getValue());
+			}
+		}
+		out.putChars(this.specialized);
+		out.putInt(this.tokenPrec);
+		if (this.termNames == null) {
+			out.putInt(-1);
+		} else {
+			out.putInt(this.termNames.size());
+			for (Map.Entry<Integer, String> name : this.termNames.entrySet()) {
+				out.putInt(name.getKey());
+				out.putString(name.getValue());
+			}
+		}
+		return out.toByteArray();
+	}
+
+	/// Write the tables to a file in the binary format.
+	public void write(Path path) throws IOException {
+		Files.write(path, this.write());
+	}
+
+	/// Read tables in the binary format from the remaining content of
+	/// `buffer`, which may be a memory-mapped file. Throws a
+	/// `RangeError` when the file was written for another version, and
+	/// an `IllegalArgumentException` when it isn't a valid parse table
+	/// file.
+	public static ParseTables read(ByteBuffer buffer) {
+		ByteBuffer in = buffer.slice().order(ByteOrder.LITTLE_ENDIAN);
+		try {
+			if (in.getInt() != Magic)
+				throw new IllegalArgumentException("Not a parse table file");
+			int format = in.getInt(), version = in.getInt();
+			if (format != FormatVersion)
+				throw new RangeError("Parse table format (" + format + ") doesn't match runtime format (" + FormatVersion + ")");
+			if (version != File.Version)
+				throw new RangeError("Parser version (" + version + ") doesn't match runtime version (" + File.Version + ")");
+			int[] states = getInts(in);
+			char[] data = getChars(in), gotoTable = getChars(in), tokenData = getChars(in);
+			String[] nodeNames = new String[count(in)];
+			for (int i = 0; i < nodeNames.length; i++)
+				nodeNames[i] = getString(in);
+			int[] nodeFlags = getInts(in);
+			String[][] nodeProps = new String[count(in)][];
+			for (int p = 0; p < nodeProps.length; p++) {
+				String[] values = nodeProps[p] = new String[nodeNames.length];
+				for (int i = count(in); i > 0; i--)
+					values[in.getInt()] = getString(in);
+			}
+			int minRepeatTerm = in.getInt(), maxTerm = in.getInt();
+			int[] tokenizers = getInts(in);
+			Map<String, int[]> topRules = new LinkedHashMap<>();
+			for (int i = count(in); i > 0; i--)
+				topRules.put(getString(in), new int[] { in.getInt(), in.getInt() });
+			int nested = count(in);
+			String[] nestedNames = new String[nested];
+			char[][] nestedEnds = new char[nested][];
+			int[] nestedPlaceholders = new int[nested];
+			for (int i = 0; i < nested; i++) {
+				nestedNames[i] = getString(in);
+				nestedEnds[i] = getChars(in);
+				nestedPlaceholders[i] = in.getInt();
+			}
+			Map<String, Integer> dialects = new LinkedHashMap<>();
+			for (int i = count(in); i > 0; i--)
+				dialects.put(getString(in), in.getInt());
+			Map<Integer, Integer> dynamicPrecedences = null;
+			int precedences = in.getInt();
+			if (precedences >= 0) {
+				dynamicPrecedences = new LinkedHashMap<>();
+				for (int i = precedences; i > 0; i--)
+					dynamicPrecedences.put(in.getInt(), in.getInt());
+			}
+			char[] specialized = getChars(in);
+			int tokenPrec = in.getInt();
+			Map<Integer, String> termNames = null;
+			int names = in.getInt();
+			if (names >= 0) {
+				termNames = new LinkedHashMap<>();
+				for (int i = names; i > 0; i--)
+					termNames.put(in.getInt(), getString(in));
+			}
+			return new ParseTables(states, data, gotoTable, tokenData, nodeNames, nodeFlags, nodeProps, minRepeatTerm,
+					maxTerm, tokenizers, topRules, nestedNames, nestedEnds, nestedPlaceholders, dialects,
+					dynamicPrecedences, specialized, tokenPrec, termNames);
+		} catch (BufferUnderflowException | IndexOutOfBoundsException | NegativeArraySizeException e) {
+			throw new IllegalArgumentException("Truncated or corrupt parse table file", e);
+		}
+	}
+
+	/// Read tables from a file in the binary format, by mapping it into
+	/// memory and copying the tables out of the mapping.
+	public static ParseTables read(Path path) throws IOException {
+		try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+			return read(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+		}
+	}
+
+	private static int count(ByteBuffer in) {
+		int count = in.getInt();
+		if (count < 0 || count > in.remaining())
+			throw new IllegalArgumentException("Truncated or corrupt parse table file");
+		return count;
+	}
+
+	private static int[] getInts(ByteBuffer in) {
+		int[] result = new int[count(in)];
+		in.asIntBuffer().get(result);
+		in.position(in.position() + result.length * 4);
+		return result;
+	}
+
+	private static char[] getChars(ByteBuffer in) {
+		char[] result = new char[count(in)];
+		in.asCharBuffer().get(result);
+		in.position(in.position() + result.length * 2);
+		return result;
+	}
+
+	private static String getString(ByteBuffer in) {
+		return new String(getChars(in));
+	}
+
+	/// A growing little-endian byte buffer.
+	private static class Output {
+
+		private ByteBuffer buffer = ByteBuffer.allocate(1 << 16).order(ByteOrder.LITTLE_ENDIAN);
+
+		private ByteBuffer reserve(int bytes) {
+			if (this.buffer.remaining() < bytes) {
+				ByteBuffer grown = ByteBuffer.allocate(Math.max(this.buffer.capacity() * 2, this.buffer.position() + bytes))
+						.order(ByteOrder.LITTLE_ENDIAN);
+				this.buffer.flip();
+				grown.put(this.buffer);
+				this.buffer = grown;
+			}
+			return this.buffer;
+		}
+
+		void putInt(int value) {
+			this.reserve(4).putInt(value);
+		}
+
+		void putInts(int[] values) {
+			this.putInt(values.length);
+			ByteBuffer buffer = this.reserve(values.length * 4);
+			buffer.asIntBuffer().put(values);
+			buffer.position(buffer.position() + values.length * 4);
+		}
+
+		void putChars(char[] values) {
+			this.putInt(values.length);
+			ByteBuffer buffer = this.reserve(values.length * 2);
+			buffer.asCharBuffer().put(values);
+			buffer.position(buffer.position() + values.length * 2);
+		}
+
+		void putString(String value) {
+			this.putChars(value.toCharArray());
+		}
+
+		byte[] toByteArray() {
+			return Arrays.copyOf(this.buffer.array(), this.buffer.position());
+		}
+	}
+}
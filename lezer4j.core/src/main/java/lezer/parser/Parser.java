@@ -32,7 +32,7 @@ wrapType?: NodeType | number
 /// When given, this will be called with the token that ends the
 /// inner region. It can return `false` to cause a given end token
 /// to be ignored.
-filterEnd?(endToken: string): boolean
+filterEnd?(endToken: CharSequence): boolean
 }
 
 /// This type is used to specify a nested parser. It may directly be a
@@ -198,7 +198,7 @@ if (token.value > -1) {
   let {parser} = stack.p
 
   for (let i = 0; i < parser.specialized.length; i++) if (parser.specialized[i] == token.value) {
-    let result = parser.specializers[i](input.read(token.start, token.end), stack)
+    let result = parser.specializers[i](input.readChars(token.start, token.end), stack)
     if (result >= 0 && stack.p.parser.dialect.allows(result >> 1)) {
       if ((result & 1) == Specialize.Specialize) token.value = result >> 1
       else token.extended = result >> 1
@@ -220,20 +220,12 @@ return index
 }
 
 addActions(stack: Stack, token: number, end: number, index: number) {
-let {state} = stack, {parser} = stack.p, {data} = parser
+let actions = stack.p.parser.actionIndex(stack.state), slot = actions.slot(token)
 for (let set = 0; set < 2; set++) {
-  for (let i = parser.stateSlot(state, set ? ParseState.Skip : ParseState.Actions);; i += 3) {
-    if (data[i] == Seq.End) {
-      if (data[i + 1] == Seq.Next) {
-        i = pair(data, i + 2)
-      } else {
-        if (index == 0 && data[i + 1] == Seq.Other)
-          index = this.putAction(pair(data, i + 1), token, end, index)
-        break
-      }
-    }
-    if (data[i] == token) index = this.putAction(pair(data, i + 1), token, end, index)
-  }
+  if (slot >= 0) for (let i = actions.start(slot, set), e = actions.end(slot, set); i < e; i++)
+    index = this.putAction(actions.action(i), token, end, index)
+  if (index == 0 && actions.other(set))
+    index = this.putAction(actions.other(set), token, end, index)
 }
 return index
 }
@@ -541,12 +533,12 @@ if (spec.startParse) {
 }
 }
 
-private scanForNestEnd(stack: Stack, endToken: TokenGroup, filter?: (token: string) => boolean) {
+private scanForNestEnd(stack: Stack, endToken: TokenGroup, filter?: (token: CharSequence) => boolean) {
 for (let pos = stack.pos; pos < this.input.length; pos++) {
   dummyToken.start = pos
   dummyToken.value = -1
   endToken.token(this.input, dummyToken, stack)
-  if (dummyToken.value > -1 && (!filter || filter(this.input.read(pos, dummyToken.end)))) return pos
+  if (dummyToken.value > -1 && (!filter || filter(this.input.readChars(pos, dummyToken.end)))) return pos
 }
 return this.input.length
 }
@@ -695,6 +687,9 @@ strict?: boolean
 /// The maximum length of the TreeBuffers generated in the output
 /// tree. Defaults to 1024.
 bufferLength?: number
+/// When true, goto entries are looked up in a dense expansion of
+/// the goto table, rather than in the table itself.
+denseGoto?: boolean
 }
 
 /// A parser holds the parse tables for a given grammar, as generated
@@ -708,6 +703,12 @@ readonly data: Readonly<Uint16Array>
 /// The goto table. See `computeGotoTable` in
 /// lezer-generator for details on the format @internal
 readonly goto: Readonly<Uint16Array>
+/// The structure used to look up goto table entries, which is
+/// either the table itself or its dense expansion @internal
+readonly gotoTable: GotoTable
+/// The action index of each state, built when the state is first
+/// used @internal
+readonly actionIndexes: (ActionIndex | null)[]
 /// A node set with the node types used by this parser.
 readonly nodeSet: NodeSet
 /// The highest term id @internal
@@ -731,7 +732,7 @@ readonly dynamicPrecedences: {[term: number]: number} | null
 /// The token types have specializers (in this.specializers) @internal
 readonly specialized: Uint16Array
 /// The specializer functions for the token types in specialized @internal
-readonly specializers: ((value: string, stack: Stack) => number)[]
+readonly specializers: ((value: CharSequence, stack: Stack) => number)[]
 /// Points into this.data at an array that holds the
 /// precedence order (higher precedence first) for ambiguous
 /// tokens @internal
@@ -786,8 +787,10 @@ if (spec.specialized) for (let i = 0; i < spec.specialized.length; i++) {
 }
 
 this.states = decodeArray(spec.states, Uint32Array)
+this.actionIndexes = new Array(this.states.length / ParseState.Size).fill(null)
 this.data = decodeArray(spec.stateData)
 this.goto = decodeArray(spec.goto)
+this.gotoTable = new CompactGotoTable(this.goto)
 let topTerms = Object.keys(spec.topRules).map(r => spec.topRules[r][1])
 this.nodeSet = new NodeSet(nodeNames.map((name, i) => NodeType.define({
   name: i >= this.minRepeatTerm ? undefined: name,
@@ -831,32 +834,17 @@ return new Parse(this, input, startPos, context)
 
 /// Get a goto table entry @internal
 getGoto(state: number, term: number, loose = false) {
-let table = this.goto
-if (term >= table[0]) return -1
-for (let pos = table[term + 1];;) {
-  let groupTag = table[pos++], last = groupTag & 1
-  let target = table[pos++]
-  if (last && loose) return target
-  for (let end = pos + (groupTag >> 1); pos < end; pos++)
-    if (table[pos] == state) return target
-  if (last) return -1
-}
+return this.gotoTable.get(state, term, loose)
 }
 
 /// Check if this state has an action for a given terminal @internal
 hasAction(state: number, terminal: number) {
-let data = this.data
-for (let set = 0; set < 2; set++) {
-  for (let i = this.stateSlot(state, set ? ParseState.Skip : ParseState.Actions), next;; i += 3) {
-    if ((next = data[i]) == Seq.End) {
-      if (data[i + 1] == Seq.Next) next = data[i = pair(data, i + 2)]
-      else if (data[i + 1] == Seq.Other) return pair(data, i + 2)
-      else break
-    }
-    if (next == terminal || next == Term.Err) return pair(data, i + 1)
-  }
+return this.actionIndex(state).hasAction(terminal)
 }
-return 0
+
+/// Get the action index for a state, building it on first use @internal
+actionIndex(state: number) {
+return this.actionIndexes[state] || (this.actionIndexes[state] = ActionIndex.build(this.states, this.data, state, this.maxTerm + 1))
 }
 
 /// @internal
@@ -940,6 +928,8 @@ if (config.strict != null)
   copy.strict = config.strict
 if (config.bufferLength != null)
   copy.bufferLength = config.bufferLength
+if (config.denseGoto != null)
+  copy.gotoTable = config.denseGoto ? new DenseGotoTable(this.goto) : new CompactGotoTable(this.goto)
 return copy as Parser
 }
 
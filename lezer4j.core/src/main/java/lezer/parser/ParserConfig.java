@@ -0,0 +1,85 @@
+package lezer.parser;
+
+import lezer.tree.NodePropSource;
+
+/// Configuration options to pass to a parser. Options that are left
+/// null keep the parser's current setting.
+public class ParserConfig {
+
+	/// Node props to add to the parser's node set.
+	private NodePropSource[] props;
+
+	/// The name of the @top declaration to parse from. If not
+	/// specified, the first @top declaration is used.
+	private String top;
+
+	/// A space-separated string of dialects to enable.
+	private String dialect;
+
+	/// When true, the parser will raise an exception, rather than run
+	/// its error-recovery strategies, when the input doesn't match the
+	/// grammar.
+	private Boolean strict;
+
+	/// The maximum length of the TreeBuffers generated in the output
+	/// tree. Defaults to 1024.
+	private Integer bufferLength;
+
+	/// When true, the goto table is expanded into a
+	/// [`DenseGotoTable`](#lezer.DenseGotoTable), which makes the goto
+	/// lookup done on every reduce take constant time, at the cost of
+	/// more memory. When false, the parser uses the
+	/// [compact](#lezer.CompactGotoTable) table, which is the default.
+	private Boolean denseGoto;
+
+	// The `nested` and `tokenizers` options will be added along with
+	// nested parsers and external tokenizers
+
+	public NodePropSource[] getProps() {
+		return props;
+	}
+
+	public void setProps(NodePropSource[] props) {
+		this.props = props;
+	}
+
+	public String getTop() {
+		return top;
+	}
+
+	public void setTop(String top) {
+		this.top = top;
+	}
+
+	public String getDialect() {
+		return dialect;
+	}
+
+	public void setDialect(String dialect) {
+		this.dialect = dialect;
+	}
+
+	public Boolean getStrict() {
+		return strict;
+	}
+
+	public void setStrict(Boolean strict) {
+		this.strict = strict;
+	}
+
+	public Integer getBufferLength() {
+		return bufferLength;
+	}
+
+	public void setBufferLength(Integer bufferLength) {
+		this.bufferLength = bufferLength;
+	}
+
+	public Boolean getDenseGoto() {
+		return denseGoto;
+	}
+
+	public void setDenseGoto(Boolean denseGoto) {
+		this.denseGoto = denseGoto;
+	}
+}
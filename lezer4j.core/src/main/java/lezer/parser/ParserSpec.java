@@ -0,0 +1,50 @@
+package lezer.parser;
+
+import java.util.Map;
+
+/// The parse tables for a grammar in the string-encoded form written
+/// by lezer-generator, which [`ParseTables.decode`](#lezer.ParseTables^decode)
+/// turns into arrays.
+///
+/// Parts of a grammar that are code (external tokenizers, specializer
+/// functions, node prop objects, nested parsers and the context
+/// tracker) aren't included. Those are referred to by their position,
+/// and supplied along with the tables when creating a parser.
+public class ParserSpec {
+
+	/// The tokenizer entry for an external tokenizer.
+	public static final int External = -1;
+
+	public int version;
+	public String states;
+	public String stateData;
+	public String gotoTable;
+	/// Space-separated names of the named node types.
+	public String nodeNames;
+	public int maxTerm;
+	public int repeatNodeCount;
+	/// The values of each node prop, in the generator's format without
+	/// the leading prop: a node id followed by a value, or a negated
+	/// count `-n` followed by `n` node ids and a shared value. Values are
+	/// kept as strings, to be deserialized by the prop they belong to.
+	public Object[][] nodeProps;
+	public int[] skippedNodes;
+	public String tokenData;
+	/// For each tokenizer, the index of its token group in `tokenData`,
+	/// or [`External`](#lezer.ParserSpec^External).
+	public int[] tokenizers;
+	/// Maps top rule names to state and top term id pairs, in the order
+	/// they were declared.
+	public Map<String, int[]> topRules;
+	/// The names, end token groups and placeholder terms of the nested
+	/// grammars.
+	public String[] nestedNames;
+	public String[] nestedEnds;
+	public int[] nestedPlaceholders;
+	public Map<String, Integer> dialects;
+	public Map<Integer, Integer> dynamicPrecedences;
+	/// The terms that have specializers.
+	public int[] specialized;
+	public int tokenPrec;
+	public Map<Integer, String> termNames;
+}
@@ -0,0 +1,10 @@
+package lezer.parser;
+
+//Note: this is duplicated in lezer-generator/src/constants.ts
+/// Markers in the action and skip sequences in a parser's data.
+public class Seq {
+	public static final int End = 0xffff;
+	public static final int Done = 0;
+	public static final int Next = 1;
+	public static final int Other = 2;
+}
@@ -0,0 +1,6 @@
+package lezer.parser;
+
+//Note: this is duplicated in lezer-generator/src/constants.ts
+public class Term {
+	public static final int Err = 0;
+}
@@ -69,7 +69,7 @@ class BufferNode implements SyntaxNode {
 	}
 
 	private SyntaxNode externalSibling(int dir/* : 1 | -1 */) {
-		return this._parent != null ? null : this.context.parent.nextChild(this.context.index + dir, dir, -1);
+		return this._parent != null ? null : this.context.parent.nextChild(this.context.index + dir, dir, After.None);
 	}
 
 	@Override
@@ -87,7 +87,7 @@ class BufferNode implements SyntaxNode {
 		int parentStart = this._parent != null ? this._parent.index + 4 : 0;
 		if (this.index == parentStart)
 			return this.externalSibling(-1);
-		return new BufferNode(this.context, this._parent, buffer.findChild(parentStart, this.index, -1, After.None));
+		return new BufferNode(this.context, this._parent, buffer.findPrevSibling(parentStart, this.index));
 	}
 
 	@Override
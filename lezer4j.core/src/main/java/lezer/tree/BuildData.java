@@ -1,7 +1,10 @@
 package lezer.tree;
 
+import java.nio.IntBuffer;
 import java.util.List;
 
+import lezer.tree.typedarray.TypedArrayAllocator;
+
 public class BuildData {
 	/// The buffer or buffer cursor to read the node data from.
 	///
@@ -23,7 +26,12 @@ public class BuildData {
 	/// two children, of type 11 and 12, might look like this:
 	///
 	/// [11, 0, 1, 4, 12, 2, 4, 4, 10, 0, 4, 12]
-	private final Object buffer; // : BufferCursor | readonly number[],
+	///
+	/// Flat buffers can be given as an `int[]`, an `IntBuffer` (whose
+	/// remaining content is used) or a `List<Integer>`. The first two
+	/// are read without boxing. A list is copied to an `int[]` once,
+	/// before the build starts.
+	private final Object buffer; // : BufferCursor | int[] | IntBuffer | List<Integer>,
 	/// The node types to use.
 	private final NodeSet nodeSet;
 	/// The id of the top node type, if any.
@@ -41,12 +49,38 @@ public class BuildData {
 	/// The first node type that indicates repeat constructs in this
 	/// grammar.
 	private Integer minRepeatType;
+	/// How the content of tree buffers is stored. Defaults to
+	/// [`TypedArrayAllocator.heap`](#tree.TypedArrayAllocator^heap).
+	private TypedArrayAllocator allocator;
+	/// When true, the content of all tree buffers created by the build
+	/// is packed into a few large slabs taken from `allocator`, instead
+	/// of one array per buffer. The slabs belong to the resulting tree
+	/// and can be freed at once by [closing](#tree.Tree.close) it.
+	private Boolean packBuffers;
+	/// When true, every tree and tree buffer in the result records how
+	/// many nodes of each type it contains, so that
+	/// [`Tree.count`](#tree.Tree.count) doesn't have to walk whole
+	/// subtrees, and the visitor form of
+	/// [`iterate`](#tree.Tree.iterate) can skip subtrees that hold none
+	/// of the visited types. This costs two ints per distinct type in
+	/// each such node.
+	private Boolean countTypes;
 
 	public BuildData(BufferCursor buffer, NodeSet nodeSet) {
 		this.buffer = buffer;
 		this.nodeSet = nodeSet;
 	}
 	
+	public BuildData(int[] buffer, NodeSet nodeSet) {
+		this.buffer = buffer;
+		this.nodeSet = nodeSet;
+	}
+
+	public BuildData(IntBuffer buffer, NodeSet nodeSet) {
+		this.buffer = buffer;
+		this.nodeSet = nodeSet;
+	}
+
 	public BuildData(List<Integer> buffer, NodeSet nodeSet) {
 		this.buffer = buffer;
 		this.nodeSet = nodeSet;
@@ -100,6 +134,30 @@ public class BuildData {
 		this.minRepeatType = minRepeatType;
 	}
 
+	public TypedArrayAllocator getAllocator() {
+		return allocator;
+	}
+
+	public void setAllocator(TypedArrayAllocator allocator) {
+		this.allocator = allocator;
+	}
+
+	public Boolean getPackBuffers() {
+		return packBuffers;
+	}
+
+	public void setPackBuffers(Boolean packBuffers) {
+		this.packBuffers = packBuffers;
+	}
+
+	public Boolean getCountTypes() {
+		return countTypes;
+	}
+
+	public void setCountTypes(Boolean countTypes) {
+		this.countTypes = countTypes;
+	}
+
 	public Object getBuffer() {
 		return buffer;
 	}
@@ -108,4 +166,25 @@ public class BuildData {
 		return nodeSet;
 	}
 
+	/// Create a cursor positioned at the end of the buffer.
+	@SuppressWarnings("unchecked")
+	BufferCursor cursor() {
+		if (buffer instanceof BufferCursor)
+			return (BufferCursor) buffer;
+		if (buffer instanceof int[]) {
+			int[] array = (int[]) buffer;
+			return new FlatBufferCursor(array, array.length);
+		}
+		if (buffer instanceof IntBuffer) {
+			IntBuffer intBuffer = (IntBuffer) buffer;
+			return new IntBufferCursor(intBuffer, intBuffer.position(), intBuffer.remaining());
+		}
+		List<Integer> list = (List<Integer>) buffer;
+		int[] array = new int[list.size()];
+		int i = 0;
+		for (Integer value : list)
+			array[i++] = value;
+		return new FlatBufferCursor(array, array.length);
+	}
+
 }
@@ -0,0 +1,90 @@
+package lezer.tree;
+
+/// A reusable character sequence over part of a `char[]` or a string,
+/// which inputs return from [`readChars`](#tree.Input.readChars) to
+/// avoid copying. Inputs over mutable storage own one, and point it
+/// at the requested range on every call.
+///
+/// Views hash like strings and equal other views with the same
+/// content. Like `StringBuilder`, they are never equal to a string, so
+/// look them up in a [`KeywordTable`](#lezer.KeywordTable) rather
+/// than a map with string keys.
+final class CharView implements CharSequence {
+
+	private char[] chars;
+	private String string;
+	private int offset, length;
+
+	CharView() {
+	}
+
+	CharView(String string, int offset, int length) {
+		this.set(string, offset, length);
+	}
+
+	CharView set(char[] chars, int offset, int length) {
+		this.chars = chars;
+		this.string = null;
+		this.offset = offset;
+		this.length = length;
+		return this;
+	}
+
+	CharView set(String string, int offset, int length) {
+		this.chars = null;
+		this.string = string;
+		this.offset = offset;
+		this.length = length;
+		return this;
+	}
+
+	@Override
+	public int length() {
+		return this.length;
+	}
+
+	@Override
+	public char charAt(int index) {
+		if (index < 0 || index >= this.length)
+			throw new IndexOutOfBoundsException("Index " + index + " out of range for length " + this.length);
+		return this.chars != null ? this.chars[this.offset + index] : this.string.charAt(this.offset + index);
+	}
+
+	@Override
+	public CharSequence subSequence(int start, int end) {
+		if (start < 0 || end > this.length || start > end)
+			throw new IndexOutOfBoundsException("Range " + start + " to " + end + " out of range for length " + this.length);
+		CharView result = new CharView();
+		return this.chars != null ? result.set(this.chars, this.offset + start, end - start)
+				: result.set(this.string, this.offset + start, end - start);
+	}
+
+	@Override
+	public int hashCode() {
+		int hash = 0;
+		for (int i = 0; i < this.length; i++)
+			hash = 31 * hash + this.charAt(i);
+		return hash;
+	}
+
+	@Override
+	public boolean equals(Object other) {
+		if (other == this)
+			return true;
+		if (!(other instanceof CharView))
+			return false;
+		CharView view = (CharView) other;
+		if (view.length != this.length)
+			return false;
+		for (int i = 0; i < this.length; i++)
+			if (view.charAt(i) != this.charAt(i))
+				return false;
+		return true;
+	}
+
+	@Override
+	public String toString() {
+		return this.chars != null ? new String(this.chars, this.offset, this.length)
+				: this.string.substring(this.offset, this.offset + this.length);
+	}
+}
@@ -0,0 +1,162 @@
+package lezer.tree;
+
+import java.util.List;
+
+/// An [input](#tree.Input) over a document that is stored as a
+/// sequence of `char[]` chunks, such as the leaves of a rope, so that
+/// it can be parsed without first joining it into a string.
+///
+/// The chunk holding the last position read is cached, so sequential
+/// calls to `get` only read from that array, and finding another chunk
+/// is a binary search over the chunk offsets. Neither the chunks nor
+/// the offset table are copied by [`clip`](#tree.ChunkedInput.clip).
+///
+/// The chunks must not be modified while the input is in use.
+public class ChunkedInput implements Input {
+
+	private static final char[] noChars = new char[0];
+
+	private final char[][] chunks;
+	/// The document offset of each chunk, followed by the total length.
+	private final int[] starts;
+	private final int length;
+	/// The cached chunk, its index, and the range of the document it
+	/// holds.
+	private char[] chunk = noChars;
+	private int chunkIndex = -1, chunkFrom = 0, chunkTo = 0;
+	private final CharView view = new CharView();
+
+	/// Create an input over the given chunks, in document order. Empty
+	/// chunks are allowed.
+	public ChunkedInput(List<char[]> chunks) {
+		this.chunks = chunks.toArray(new char[chunks.size()][]);
+		this.starts = new int[this.chunks.length + 1];
+		long pos = 0;
+		for (int i = 0; i < this.chunks.length; i++) {
+			this.starts[i] = (int) pos;
+			pos += this.chunks[i].length;
+			if (pos > Integer.MAX_VALUE)
+				throw new IllegalArgumentException("Document too long for an Input");
+		}
+		this.starts[this.chunks.length] = (int) pos;
+		this.length = (int) pos;
+	}
+
+	private ChunkedInput(char[][] chunks, int[] starts, int length) {
+		this.chunks = chunks;
+		this.starts = starts;
+		this.length = length;
+	}
+
+	@Override
+	public int length() {
+		return this.length;
+	}
+
+	@Override
+	public int get(int pos) {
+		if (pos >= this.chunkFrom && pos < this.chunkTo)
+			return this.chunk[pos - this.chunkFrom];
+		if (pos < 0 || pos >= this.length)
+			return -1;
+		this.load(pos);
+		return this.chunk[pos - this.chunkFrom];
+	}
+
+	@Override
+	public String lineAfter(int pos) {
+		return pos < 0 ? "" : this.read(pos, this.lineEnd(pos));
+	}
+
+	@Override
+	public CharSequence lineCharsAfter(int pos) {
+		return pos < 0 ? "" : this.readChars(pos, this.lineEnd(pos));
+	}
+
+	private int lineEnd(int pos) {
+		int end = pos;
+		scan: while (end < this.length) {
+			if (end < this.chunkFrom || end >= this.chunkTo)
+				this.load(end);
+			for (; end < this.chunkTo; end++)
+				if (this.chunk[end - this.chunkFrom] == '\n')
+					break scan;
+		}
+		return end;
+	}
+
+	@Override
+	public String read(int from, int to) {
+		to = Math.min(to, this.length);
+		if (from >= to)
+			return "";
+		if (from < this.chunkFrom || from >= this.chunkTo)
+			this.load(from);
+		if (to <= this.chunkTo)
+			return new String(this.chunk, from - this.chunkFrom, to - from);
+		StringBuilder result = new StringBuilder(to - from);
+		for (int pos = from; pos < to;) {
+			if (pos >= this.chunkTo)
+				this.load(pos);
+			int end = Math.min(to, this.chunkTo);
+			result.append(this.chunk, pos - this.chunkFrom, end - pos);
+			pos = end;
+		}
+		return result.toString();
+	}
+
+	/// Returns a view on the chunk when the range lies inside a single
+	/// chunk.
+	@Override
+	public CharSequence readChars(int from, int to) {
+		to = Math.min(to, this.length);
+		if (from >= to)
+			return "";
+		if (from < this.chunkFrom || from >= this.chunkTo)
+			this.load(from);
+		return to <= this.chunkTo ? this.view.set(this.chunk, from - this.chunkFrom, to - from)
+				: this.read(from, to);
+	}
+
+	/// Exposes the chunk holding `pos`.
+	@Override
+	public boolean chunk(int pos, InputChunk chunk) {
+		if (pos < this.chunkFrom || pos >= this.chunkTo) {
+			if (pos < 0 || pos >= this.length)
+				return false;
+			this.load(pos);
+		}
+		chunk.set(this.chunk, 0, this.chunkFrom, this.chunkTo);
+		return true;
+	}
+
+	@Override
+	public Input clip(int at) {
+		return new ChunkedInput(this.chunks, this.starts, Math.min(at, this.length));
+	}
+
+	/// Make the chunk holding `pos`, which must be inside the document,
+	/// the cached chunk.
+	private void load(int pos) {
+		int index = this.chunkIndex + 1;
+		// Sequential reads move to the next chunk, unless it's empty
+		if (index >= this.chunks.length || pos != this.starts[index] || pos >= this.starts[index + 1]) {
+			// The last chunk starting at or before `pos`, which skips
+			// empty chunks, since those start at the same offset as their
+			// successor
+			int lo = 0, hi = this.chunks.length;
+			while (lo < hi) {
+				int mid = (lo + hi) >>> 1;
+				if (this.starts[mid] <= pos)
+					lo = mid + 1;
+				else
+					hi = mid;
+			}
+			index = lo - 1;
+		}
+		this.chunkIndex = index;
+		this.chunk = this.chunks[index];
+		this.chunkFrom = this.starts[index];
+		this.chunkTo = Math.min(this.starts[index + 1], this.length);
+	}
+}
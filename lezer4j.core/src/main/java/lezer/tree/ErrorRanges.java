@@ -0,0 +1,59 @@
+package lezer.tree;
+
+import java.util.Arrays;
+
+import lezer.tree.typedarray.Uint16Array;
+
+/// Collects the ranges of the [error nodes](#tree.NodeType.isError) in
+/// a tree, for [`Tree.errors`](#tree.Tree.errors). The walk only
+/// descends into trees and buffers whose [subtree
+/// flags](#tree.SubtreeFlag) say they contain errors, so in a mostly
+/// valid tree it touches little beyond the paths leading to them.
+final class ErrorRanges {
+
+	static final int[] none = new int[0];
+
+	private int[] ranges = none;
+	private int size = 0;
+
+	/// The from/to pairs of the error nodes in `tree`, in document
+	/// order.
+	static int[] collect(Tree tree) {
+		ErrorRanges errors = new ErrorRanges();
+		errors.add(tree.type, 0, tree.length);
+		errors.tree(tree, 0);
+		return errors.size == 0 ? none : Arrays.copyOf(errors.ranges, errors.size);
+	}
+
+	private void add(NodeType type, int from, int to) {
+		if (!type.isError())
+			return;
+		if (this.size == this.ranges.length)
+			this.ranges = Arrays.copyOf(this.ranges, Math.max(8, this.size << 1));
+		this.ranges[this.size++] = from;
+		this.ranges[this.size++] = to;
+	}
+
+	private void tree(Tree tree, int start) {
+		if ((tree.subtreeFlags & SubtreeFlag.Error) == 0)
+			return;
+		for (int i = 0; i < tree.children.length; i++) {
+			TreeChild child = tree.children[i];
+			int childStart = start + tree.positions[i];
+			if (child instanceof TreeBuffer) {
+				this.buffer((TreeBuffer) child, childStart);
+			} else {
+				this.add(child.type, childStart, childStart + child.length);
+				this.tree((Tree) child, childStart);
+			}
+		}
+	}
+
+	private void buffer(TreeBuffer buffer, int start) {
+		if ((buffer.subtreeFlags & SubtreeFlag.Error) == 0)
+			return;
+		Uint16Array data = buffer.buffer;
+		for (int i = 0; i < data.length; i += 4)
+			this.add(buffer.set.types.get(data.get(i)), start + data.get(i + 1), start + data.get(i + 2));
+	}
+}
@@ -21,6 +21,43 @@ public interface Input {
 /// Read part of the stream as a string
 	String read(int from, int to);
 
+/// Read part of the stream as a character sequence. Implementations
+/// return a view on their own storage when they can, rather than
+/// copying the content into a new string. The result is only
+/// guaranteed to hold the content until the next call to a method of
+/// this input, so call `toString` on it to keep it.
+	default CharSequence readChars(int from, int to) {
+		return this.read(from, to);
+	}
+
+/// Like [`lineAfter`](#tree.Input.lineAfter), but returning a
+/// character sequence that may be a view, with the same restrictions
+/// as the result of [`readChars`](#tree.Input.readChars).
+	default CharSequence lineCharsAfter(int pos) {
+		return this.lineAfter(pos);
+	}
+
+/// Point `chunk` at a contiguous run of the input that contains
+/// `pos`, so that it can be scanned as an array, and return true, or
+/// return false when `pos` is outside of the input. Implementations
+/// that keep their content in arrays expose those directly, others
+/// copy up to [`CopySize`](#tree.InputChunk^CopySize) code units
+/// starting at `pos` into the chunk's buffer. Like the result of
+/// [`readChars`](#tree.Input.readChars), the chunk's content is only
+/// guaranteed to stay the same until the next call to a method of this
+/// input.
+	default boolean chunk(int pos, InputChunk chunk) {
+		int length = this.length();
+		if (pos < 0 || pos >= length)
+			return false;
+		char[] buffer = chunk.buffer();
+		int end = Math.min(length, pos + buffer.length);
+		for (int i = pos; i < end; i++)
+			buffer[i - pos] = (char) this.get(i);
+		chunk.set(buffer, 0, pos, end);
+		return true;
+	}
+
 /// Return a new `Input` over the same data, but with a lower
 /// `length`. Used, for example, when nesting grammars to give the
 /// inner grammar a narrower view of the input.
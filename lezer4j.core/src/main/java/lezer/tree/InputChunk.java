@@ -0,0 +1,48 @@
+package lezer.tree;
+
+/// A contiguous run of an input's content, filled in by
+/// [`Input.chunk`](#tree.Input.chunk), which lets tokenizers scan the
+/// content as an array instead of calling `Input.get` for every code
+/// unit. A chunk object can be reused for any number of calls.
+public class InputChunk {
+
+	/// The maximum amount of code units copied by inputs that can't
+	/// expose their storage directly.
+	public static final int CopySize = 1024;
+
+	/// The array holding the chunk's content. This may be the input's own
+	/// storage, and must not be modified.
+	public char[] chars;
+	/// The index in `chars` of the code unit at position `from`.
+	public int offset;
+	/// The start of the chunk in the document.
+	public int from;
+	/// The end of the chunk in the document.
+	public int to;
+
+	private char[] buffer;
+
+	/// The code unit at the given document position, which must be in
+	/// the chunk's range.
+	public char get(int pos) {
+		return this.chars[this.offset + pos - this.from];
+	}
+
+	/// Point the chunk at the given array range. Used by `Input`
+	/// implementations.
+	public InputChunk set(char[] chars, int offset, int from, int to) {
+		this.chars = chars;
+		this.offset = offset;
+		this.from = from;
+		this.to = to;
+		return this;
+	}
+
+	/// A `CopySize` array owned by the chunk, for inputs that need to
+	/// copy their content.
+	public char[] buffer() {
+		if (this.buffer == null)
+			this.buffer = new char[CopySize];
+		return this.buffer;
+	}
+}
@@ -0,0 +1,54 @@
+package lezer.tree;
+
+import java.nio.IntBuffer;
+
+/// A `BufferCursor` over the remaining content of an `IntBuffer`,
+/// read with absolute gets so that the buffer's own position is
+/// left alone.
+class IntBufferCursor implements BufferCursor {
+
+	private final IntBuffer buffer;
+	private final int base;
+	private int index;
+
+	IntBufferCursor(IntBuffer buffer, int base, int index) {
+		this.buffer = buffer;
+		this.base = base;
+		this.index = index;
+	}
+
+	@Override
+	public int id() {
+		return this.buffer.get(this.base + this.index - 4);
+	}
+
+	@Override
+	public int start() {
+		return this.buffer.get(this.base + this.index - 3);
+	}
+
+	@Override
+	public int end() {
+		return this.buffer.get(this.base + this.index - 2);
+	}
+
+	@Override
+	public int size() {
+		return this.buffer.get(this.base + this.index - 1);
+	}
+
+	@Override
+	public int pos() {
+		return this.index;
+	}
+
+	@Override
+	public void next() {
+		this.index -= 4;
+	}
+
+	@Override
+	public BufferCursor fork() {
+		return new IntBufferCursor(this.buffer, this.base, this.index);
+	}
+}
@@ -0,0 +1,407 @@
+package lezer.tree;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+import lezer.tree.typedarray.BufferCleaner;
+
+/// An [input](#tree.Input) that reads a file through memory mappings,
+/// so that large documents can be parsed without holding their content
+/// on the heap. The file is decoded one window of
+/// [`WindowSize`](#tree.MappedFileInput^WindowSize) code units at a
+/// time, and only the current window is kept in memory.
+///
+/// Windows are found through a table of the char and byte offsets at
+/// which they start, which is filled in as the file is read, so that
+/// sequential access only ever decodes each window once, and going
+/// back to an earlier window doesn't need a scan. For single-byte
+/// charsets, offsets map directly, and no table is needed.
+///
+/// The length of the document is computed on first use, which the
+/// parser does right away. For single-byte charsets, it is the file
+/// size. For UTF-16LE and UTF-16BE, it is half of it, and for UTF-8, it
+/// is found by counting the code units of the encoded characters. Both
+/// scan the bytes without decoding them, and only hold as long as the
+/// file is well-formed. For other charsets, such as UTF-16 with a byte
+/// order mark or multi-byte legacy encodings, and for malformed input,
+/// the whole file is decoded once up front, discarding the result.
+///
+/// The mappings are released when the input is garbage collected, or
+/// right away by [closing](#tree.MappedFileInput.close) it.
+///
+/// Instances aren't thread-safe, and neither are the inputs returned
+/// by [`clip`](#tree.MappedFileInput.clip), which share their state
+/// with the input they were clipped from.
+public class MappedFileInput implements Input, Closeable {
+
+	/// The size of a decoded window, in UTF-16 code units.
+	public static final int WindowSize = 1 << 15;
+
+	/// The amount of bytes mapped in a single segment. Files larger than
+	/// this are mapped as multiple segments.
+	static final int SegmentSize = 1 << 28;
+
+	/// The amount of bytes each segment maps beyond its end, so that
+	/// any window starting inside a segment can be decoded from it.
+	private static final int SegmentOverlap = WindowSize * 4;
+
+	private final Source source;
+	private int length;
+	private char[] chars;
+	/// The range of the document held in `chars`.
+	private int windowFrom = 0, windowTo = 0;
+	private final CharView view = new CharView();
+
+	/// Map the file at `path`, which is encoded as UTF-8.
+	public MappedFileInput(Path path) throws IOException {
+		this(path, StandardCharsets.UTF_8);
+	}
+
+	/// Map the file at `path`, which is encoded with `charset`.
+	/// Malformed input is decoded as replacement characters.
+	public MappedFileInput(Path path, Charset charset) throws IOException {
+		this(path, charset, SegmentSize);
+	}
+
+	MappedFileInput(Path path, Charset charset, int segmentSize) throws IOException {
+		this(new Source(path, charset, segmentSize), -1);
+	}
+
+	private MappedFileInput(Source source, int length) {
+		this.source = source;
+		this.length = length;
+	}
+
+	@Override
+	public int length() {
+		if (this.length < 0)
+			this.length = this.source.length();
+		return this.length;
+	}
+
+	/// The number of windows the file has been split into so far, which
+	/// stays at one until something is decoded.
+	int knownWindows() {
+		return this.source.windows;
+	}
+
+	@Override
+	public int get(int pos) {
+		if (pos >= this.windowFrom && pos < this.windowTo)
+			return this.chars[pos - this.windowFrom];
+		if (pos < 0 || pos >= this.length())
+			return -1;
+		this.load(pos);
+		return this.chars[pos - this.windowFrom];
+	}
+
+	@Override
+	public String lineAfter(int pos) {
+		return pos < 0 ? "" : this.read(pos, this.lineEnd(pos));
+	}
+
+	@Override
+	public CharSequence lineCharsAfter(int pos) {
+		return pos < 0 ? "" : this.readChars(pos, this.lineEnd(pos));
+	}
+
+	private int lineEnd(int pos) {
+		int end = pos, length = this.length();
+		scan: while (end < length) {
+			if (end < this.windowFrom || end >= this.windowTo)
+				this.load(end);
+			for (; end < this.windowTo; end++)
+				if (this.chars[end - this.windowFrom] == '\n')
+					break scan;
+		}
+		return end;
+	}
+
+	@Override
+	public String read(int from, int to) {
+		to = Math.min(to, this.length());
+		if (from >= to)
+			return "";
+		if (from >= this.windowFrom && to <= this.windowTo)
+			return new String(this.chars, from - this.windowFrom, to - from);
+		StringBuilder result = new StringBuilder(to - from);
+		for (int pos = from; pos < to;) {
+			if (pos < this.windowFrom || pos >= this.windowTo)
+				this.load(pos);
+			int end = Math.min(to, this.windowTo);
+			result.append(this.chars, pos - this.windowFrom, end - pos);
+			pos = end;
+		}
+		return result.toString();
+	}
+
+	/// Returns a view on the current window when the range lies inside
+	/// it.
+	@Override
+	public CharSequence readChars(int from, int to) {
+		to = Math.min(to, this.length());
+		if (from >= to)
+			return "";
+		if (from < this.windowFrom || from >= this.windowTo)
+			this.load(from);
+		return to <= this.windowTo ? this.view.set(this.chars, from - this.windowFrom, to - from)
+				: this.read(from, to);
+	}
+
+	/// Exposes the decoded window holding `pos`.
+	@Override
+	public boolean chunk(int pos, InputChunk chunk) {
+		if (pos < this.windowFrom || pos >= this.windowTo) {
+			if (pos < 0 || pos >= this.length())
+				return false;
+			this.load(pos);
+		}
+		chunk.set(this.chars, 0, this.windowFrom, this.windowTo);
+		return true;
+	}
+
+	@Override
+	public Input clip(int at) {
+		return new MappedFileInput(this.source, Math.min(at, this.length()));
+	}
+
+	/// Unmap the file. Afterwards, reading from this input, or from the
+	/// inputs clipped from it, outside of the window that was last
+	/// decoded throws an `IllegalStateException`.
+	@Override
+	public void close() {
+		this.source.close();
+	}
+
+	/// Decode the window holding `pos`, which must be inside the
+	/// document.
+	private void load(int pos) {
+		if (this.chars == null)
+			this.chars = new char[WindowSize];
+		Source source = this.source;
+		if (source.singleByte) {
+			int from = pos - pos % WindowSize;
+			this.setWindow(from, source.decodeAt(from, this.chars));
+			return;
+		}
+		for (;;) {
+			int window = source.find(pos);
+			int from = source.charStarts[window], count = source.decode(window, this.chars);
+			if (pos < from + count) {
+				this.setWindow(from, count);
+				return;
+			}
+		}
+	}
+
+	private void setWindow(int from, int count) {
+		this.windowFrom = from;
+		this.windowTo = Math.min(from + count, this.length());
+	}
+
+	/// The mapped file and the windows found in it so far, shared by an
+	/// input and the inputs clipped from it.
+	private static final class Source {
+
+		/// Cleared when the input is closed.
+		private MappedByteBuffer[] segments;
+		private final int segmentSize;
+		private final long size;
+		private final Charset charset;
+		private final CharsetDecoder decoder;
+		/// Set for charsets that encode every char as a single byte.
+		final boolean singleByte;
+
+		/// The char and byte offsets at which the known windows start.
+		/// Once the whole file has been seen, the last entry holds the end
+		/// of the file.
+		int[] charStarts = { 0 };
+		private long[] byteStarts = { 0 };
+		private int windows = 1;
+		private boolean complete = false;
+		private int length = -1;
+		/// Where the window decoded by the last call to `decodeAt` ended.
+		private long nextByte;
+
+		Source(Path path, Charset charset, int segmentSize) throws IOException {
+			try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+				this.size = channel.size();
+				MappedByteBuffer[] segments = new MappedByteBuffer[(int) Math.max(1,
+						(this.size + segmentSize - 1) / segmentSize)];
+				for (int i = 0; i < segments.length; i++) {
+					long start = (long) i * segmentSize;
+					segments[i] = channel.map(FileChannel.MapMode.READ_ONLY, start,
+							Math.min(this.size - start, segmentSize + SegmentOverlap));
+				}
+				this.segments = segments;
+			}
+			this.segmentSize = segmentSize;
+			this.charset = charset;
+			this.decoder = charset.newDecoder().onMalformedInput(CodingErrorAction.REPLACE)
+					.onUnmappableCharacter(CodingErrorAction.REPLACE);
+			this.singleByte = this.decoder.maxCharsPerByte() == 1 && charset.canEncode()
+					&& charset.newEncoder().maxBytesPerChar() == 1;
+		}
+
+		int length() {
+			if (this.length < 0) {
+				long length = this.singleByte ? this.size
+						: this.charset.equals(StandardCharsets.UTF_8) ? this.utf8Length()
+								: this.charset.equals(StandardCharsets.UTF_16LE) ? this.utf16Length(false)
+										: this.charset.equals(StandardCharsets.UTF_16BE) ? this.utf16Length(true) : -1;
+				if (length < 0) {
+					char[] scratch = new char[WindowSize];
+					while (!this.complete)
+						this.decode(this.windows - 1, scratch);
+					length = this.charStarts[this.windows - 1];
+				}
+				if (length > Integer.MAX_VALUE)
+					throw new IllegalArgumentException("Document too long for an Input");
+				this.length = (int) length;
+			}
+			return this.length;
+		}
+
+		/// Count the UTF-16 code units in the file, or return -1 if it
+		/// isn't valid UTF-8, in which case the count would depend on the
+		/// way the decoder replaces malformed input.
+		private long utf8Length() {
+			MappedByteBuffer[] segments = this.segments();
+			long units = 0;
+			// A character that straddles a segment boundary is read from
+			// the overlap, and the next segment starts after it
+			int start = 0;
+			for (int s = 0; s < segments.length; s++) {
+				MappedByteBuffer segment = segments[s];
+				long segmentStart = (long) s * this.segmentSize;
+				int end = (int) Math.min(this.segmentSize, this.size - segmentStart), limit = segment.limit();
+				int i = start;
+				while (i < end) {
+					int b = segment.get(i);
+					if (b >= 0) {
+						units++;
+						i++;
+						continue;
+					}
+					b &= 0xff;
+					int extra = b < 0xc2 ? -1 : b < 0xe0 ? 1 : b < 0xf0 ? 2 : b < 0xf5 ? 3 : -1;
+					if (extra < 0 || i + extra >= limit)
+						return -1;
+					int code = b & (0x3f >> extra);
+					for (int j = 1; j <= extra; j++) {
+						int next = segment.get(i + j);
+						if ((next & 0xc0) != 0x80)
+							return -1;
+						code = code << 6 | next & 0x3f;
+					}
+					if (extra == 2 && (code < 0x800 || code >= 0xd800 && code < 0xe000)
+							|| extra == 3 && (code < 0x10000 || code > 0x10ffff))
+						return -1;
+					units += extra == 3 ? 2 : 1;
+					i += extra + 1;
+				}
+				start = i - end;
+			}
+			return units;
+		}
+
+		private MappedByteBuffer[] segments() {
+			if (this.segments == null)
+				throw new IllegalStateException("This input has been closed");
+			return this.segments;
+		}
+
+		void close() {
+			MappedByteBuffer[] segments = this.segments;
+			this.segments = null;
+			if (segments != null)
+				for (MappedByteBuffer segment : segments)
+					BufferCleaner.free(segment);
+		}
+
+		/// Return the amount of code units in the file, or -1 if it isn't
+		/// well-formed UTF-16, in which case the decoder may replace more
+		/// than one unit by a single replacement char.
+		private long utf16Length(boolean bigEndian) {
+			if (this.size % 2 != 0)
+				return -1;
+			MappedByteBuffer[] segments = this.segments();
+			// Code units and surrogate pairs that straddle a segment
+			// boundary are read from the overlap, as in `utf8Length`
+			int start = 0;
+			for (int s = 0; s < segments.length; s++) {
+				MappedByteBuffer segment = segments[s];
+				long segmentStart = (long) s * this.segmentSize;
+				int end = (int) Math.min(this.segmentSize, this.size - segmentStart), limit = segment.limit();
+				int high = bigEndian ? 0 : 1;
+				int i = start;
+				for (; i < end; i += 2) {
+					int b = segment.get(i + high) & 0xf8;
+					if (b != 0xd8)
+						continue;
+					if ((segment.get(i + high) & 0x04) != 0 || i + 3 >= limit
+							|| (segment.get(i + 2 + high) & 0xfc) != 0xdc)
+						return -1;
+					i += 2;
+				}
+				start = i - end;
+			}
+			return this.size / 2;
+		}
+
+		/// The index of the last known window that starts at or before
+		/// `pos`.
+		int find(int pos) {
+			int index = Arrays.binarySearch(this.charStarts, 0, this.windows, pos);
+			return index < 0 ? -index - 2 : index;
+		}
+
+		/// Decode the window at the given index into `out`, returning the
+		/// amount of chars it holds. When this is the last known window,
+		/// the start of the next one is added to the table.
+		int decode(int window, char[] out) {
+			long byteStart = this.byteStarts[window];
+			int count = this.decodeAt(byteStart, out);
+			if (window == this.windows - 1 && !this.complete) {
+				if (this.windows == this.charStarts.length) {
+					this.charStarts = Arrays.copyOf(this.charStarts, this.windows << 1);
+					this.byteStarts = Arrays.copyOf(this.byteStarts, this.windows << 1);
+				}
+				long charEnd = (long) this.charStarts[window] + count;
+				if (charEnd > Integer.MAX_VALUE)
+					throw new IllegalArgumentException("Document too long for an Input");
+				this.charStarts[this.windows] = (int) charEnd;
+				this.byteStarts[this.windows++] = this.nextByte;
+				this.complete = this.nextByte >= this.size;
+			}
+			return count;
+		}
+
+		/// Decode the window starting at the given byte offset.
+		int decodeAt(long byteStart, char[] out) {
+			int segment = (int) (byteStart / this.segmentSize);
+			long segmentStart = (long) segment * this.segmentSize;
+			ByteBuffer in = this.segments()[segment].duplicate();
+			in.position((int) (byteStart - segmentStart));
+			CharBuffer result = CharBuffer.wrap(out);
+			boolean atEnd = segmentStart + in.limit() == this.size;
+			this.decoder.reset();
+			this.decoder.decode(in, result, atEnd);
+			if (atEnd && !in.hasRemaining())
+				this.decoder.flush(result);
+			this.nextByte = segmentStart + in.position();
+			return result.position();
+		}
+	}
+}
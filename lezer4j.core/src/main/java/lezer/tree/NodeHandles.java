@@ -0,0 +1,238 @@
+package lezer.tree;
+
+import lezer.tree.typedarray.Uint16Array;
+
+/// Node handles are an alternative to [syntax nodes](#tree.SyntaxNode)
+/// that represent a node in a tree as a primitive `long`, so that
+/// large amounts of node references can be stored in primitive arrays,
+/// and the tree can be navigated without allocating node objects.
+///
+/// A handle table is created for a given tree with
+/// [`Tree.handles`](#tree.Tree.handles), and its handles are only
+/// meaningful to that table. Navigation follows the same rules as
+/// syntax nodes, skipping anonymous nodes.
+///
+/// The table numbers every `Tree` and `TreeBuffer` in the tree with a
+/// slot, in breadth-first order, so that the children of a tree node
+/// occupy consecutive slots. A handle holds the slot in its upper 32
+/// bits and, for nodes inside a tree buffer, their index in that buffer
+/// in its lower 32 bits (-1 for tree nodes).
+///
+/// Moving to the parent or siblings of nodes in large tree buffers
+/// uses the buffer's side index, and takes constant time.
+public class NodeHandles {
+
+	/// The handle value used to indicate the absence of a node.
+	public static final long None = -1L;
+
+	private final TreeChild[] nodes;
+	/// The parent slot of each slot, -1 for the top.
+	private final int[] parent;
+	/// The document position at which each slot starts.
+	private final int[] from;
+	/// The slot of the first child of each tree slot.
+	private final int[] firstChild;
+
+	NodeHandles(Tree top) {
+		int count = countSlots(top);
+		TreeChild[] nodes = new TreeChild[count];
+		int[] parent = new int[count], from = new int[count], firstChild = new int[count];
+		nodes[0] = top;
+		parent[0] = -1;
+		for (int slot = 0, next = 1; slot < next; slot++) {
+			firstChild[slot] = next;
+			if (!(nodes[slot] instanceof Tree))
+				continue;
+			Tree tree = (Tree) nodes[slot];
+			for (int i = 0; i < tree.children.length; i++, next++) {
+				nodes[next] = tree.children[i];
+				parent[next] = slot;
+				from[next] = from[slot] + tree.positions[i];
+			}
+		}
+		this.nodes = nodes;
+		this.parent = parent;
+		this.from = from;
+		this.firstChild = firstChild;
+	}
+
+	private static int countSlots(TreeChild node) {
+		int count = 1;
+		if (node instanceof Tree)
+			for (TreeChild child : ((Tree) node).children)
+				count += countSlots(child);
+		return count;
+	}
+
+	private static long handle(int slot, int index) {
+		return (long) slot << 32 | (index & 0xffffffffL);
+	}
+
+	private static int slot(long handle) {
+		return (int) (handle >> 32);
+	}
+
+	private static int index(long handle) {
+		return (int) handle;
+	}
+
+	/// The handle of the top node of the tree.
+	public long top() {
+		return handle(0, -1);
+	}
+
+	/// The type of the given node.
+	public NodeType type(long handle) {
+		int index = index(handle);
+		TreeChild node = this.nodes[slot(handle)];
+		if (index < 0)
+			return node.type;
+		TreeBuffer buffer = (TreeBuffer) node;
+		return buffer.set.types.get(buffer.buffer.get(index));
+	}
+
+	/// The start position of the given node.
+	public int from(long handle) {
+		int slot = slot(handle), index = index(handle);
+		return index < 0 ? this.from[slot] : this.from[slot] + ((TreeBuffer) this.nodes[slot]).buffer.get(index + 1);
+	}
+
+	/// The end position of the given node.
+	public int to(long handle) {
+		int slot = slot(handle), index = index(handle);
+		return this.from[slot] + (index < 0 ? this.nodes[slot].length
+				: ((TreeBuffer) this.nodes[slot]).buffer.get(index + 2));
+	}
+
+	/// The node's parent node, or `None` for the top node.
+	public long parent(long handle) {
+		int slot = slot(handle), index = index(handle);
+		if (index >= 0) {
+			int parent = ((TreeBuffer) this.nodes[slot]).findParent(index);
+			if (parent >= 0)
+				return handle(slot, parent);
+		} else if (this.parent[slot] < 0) {
+			return None;
+		}
+		slot = this.parent[slot];
+		while (this.nodes[slot].type.isAnonymous() && this.parent[slot] >= 0)
+			slot = this.parent[slot];
+		return handle(slot, -1);
+	}
+
+	/// The first child of the node, or `None`.
+	public long firstChild(long handle) {
+		return this.child(handle, 1);
+	}
+
+	/// The last child of the node, or `None`.
+	public long lastChild(long handle) {
+		return this.child(handle, -1);
+	}
+
+	private long child(long handle, int dir/* : 1 | -1 */) {
+		int slot = slot(handle), index = index(handle);
+		if (index < 0)
+			return this.nextChild(slot, dir < 0 ? ((Tree) this.nodes[slot]).children.length - 1 : 0, dir);
+		Uint16Array buffer = ((TreeBuffer) this.nodes[slot]).buffer;
+		int child = ((TreeBuffer) this.nodes[slot]).findChild(index + 4, buffer.get(index + 3), dir, After.None);
+		return child < 0 ? None : handle(slot, child);
+	}
+
+	/// The node's next sibling, or `None`.
+	public long nextSibling(long handle) {
+		return this.sibling(handle, 1);
+	}
+
+	/// The node's previous sibling, or `None`.
+	public long prevSibling(long handle) {
+		return this.sibling(handle, -1);
+	}
+
+	private long sibling(long handle, int dir/* : 1 | -1 */) {
+		int slot = slot(handle), index = index(handle);
+		if (index >= 0) {
+			TreeBuffer buffer = (TreeBuffer) this.nodes[slot];
+			int parent = buffer.findParent(index);
+			if (dir > 0) {
+				int after = buffer.buffer.get(index + 3);
+				if (after < (parent >= 0 ? buffer.buffer.get(parent + 3) : buffer.buffer.length))
+					return handle(slot, after);
+			} else {
+				int prev = buffer.findPrevSibling(parent >= 0 ? parent + 4 : 0, index);
+				if (prev >= 0)
+					return handle(slot, prev);
+			}
+			if (parent >= 0)
+				return None;
+		}
+		int parent = this.parent[slot];
+		return parent < 0 ? None : this.nextChild(parent, slot - this.firstChild[parent] + dir, dir);
+	}
+
+	/// Find the first non-anonymous node among the children of the tree
+	/// at `slot`, starting at child `i` and moving in direction `dir`.
+	/// Descends into anonymous children and, when the tree itself is
+	/// anonymous, continues with its siblings, like
+	/// [`TreeNode.nextChild`](#tree.TreeNode.nextChild).
+	private long nextChild(int slot, int i, int dir/* : 1 | -1 */) {
+		scan: for (;;) {
+			Tree tree = (Tree) this.nodes[slot];
+			for (int first = this.firstChild[slot]; i >= 0 && i < tree.children.length; i += dir) {
+				int child = first + i;
+				TreeChild node = this.nodes[child];
+				if (node instanceof TreeBuffer) {
+					TreeBuffer buffer = (TreeBuffer) node;
+					int index = buffer.findChild(0, buffer.buffer.length, dir, After.None);
+					if (index >= 0)
+						return handle(child, index);
+				} else if (!node.type.isAnonymous()) {
+					return handle(child, -1);
+				} else {
+					slot = child;
+					i = dir < 0 ? ((Tree) node).children.length - 1 : 0;
+					continue scan;
+				}
+			}
+			if (!tree.type.isAnonymous() || this.parent[slot] < 0)
+				return None;
+			i = slot - this.firstChild[this.parent[slot]] + dir;
+			slot = this.parent[slot];
+		}
+	}
+
+	/// Get the handle for a syntax node in this table's tree.
+	public long handle(SyntaxNode node) {
+		if (node instanceof TreeNode)
+			return handle(this.slot((TreeNode) node), -1);
+		BufferNode bufferNode = (BufferNode) node;
+		return handle(this.firstChild[this.slot(bufferNode.context.parent)] + bufferNode.context.index,
+				bufferNode.index);
+	}
+
+	private int slot(TreeNode node) {
+		return node._parent == null ? 0 : this.firstChild[this.slot(node._parent)] + node.index;
+	}
+
+	/// Create a [syntax node](#tree.SyntaxNode) for the given handle.
+	public SyntaxNode node(long handle) {
+		int slot = slot(handle), index = index(handle);
+		if (index < 0)
+			return this.treeNode(slot);
+		int parent = this.parent[slot];
+		BufferContext context = new BufferContext(this.treeNode(parent), (TreeBuffer) this.nodes[slot],
+				slot - this.firstChild[parent], this.from[slot]);
+		return this.bufferNode(context, index);
+	}
+
+	private BufferNode bufferNode(BufferContext context, int index) {
+		int parent = context.buffer.findParent(index);
+		return new BufferNode(context, parent < 0 ? null : this.bufferNode(context, parent), index);
+	}
+
+	private TreeNode treeNode(int slot) {
+		int parent = this.parent[slot];
+		return new TreeNode((Tree) this.nodes[slot], this.from[slot],
+				parent < 0 ? 0 : slot - this.firstChild[parent], parent < 0 ? null : this.treeNode(parent));
+	}
+}
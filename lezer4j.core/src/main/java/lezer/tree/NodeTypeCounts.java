@@ -0,0 +1,144 @@
+package lezer.tree;
+
+import java.util.Arrays;
+
+import lezer.tree.typedarray.Uint16Array;
+
+/// A sparse histogram of the node types inside a tree or tree buffer,
+/// attached by [`Tree.build`](#tree.Tree^build) when
+/// [`countTypes`](#tree.BuildData.countTypes) is enabled. It holds the
+/// ids of the types that occur, sorted, with the amount of nodes of
+/// each, not counting the tree node itself.
+///
+/// Counts only depend on the content of the node they are attached to,
+/// so nodes reused by later parses keep them.
+final class NodeTypeCounts {
+
+	private final int[] ids;
+	private final int[] counts;
+
+	private NodeTypeCounts(int[] ids, int[] counts) {
+		this.ids = ids;
+		this.counts = counts;
+	}
+
+	/// The amount of nodes with the given type id.
+	int get(int id) {
+		int i = Arrays.binarySearch(this.ids, id);
+		return i < 0 ? 0 : this.counts[i];
+	}
+
+	/// Whether any of the types that have an entry in `table`, which is
+	/// indexed by type id, occur.
+	boolean any(Object[] table) {
+		for (int id : this.ids)
+			if (id < table.length && table[id] != null)
+				return true;
+		return false;
+	}
+
+	/// Attach counts to the given tree and all nodes below it that
+	/// don't have them yet.
+	static void attach(Tree tree, int typeCount) {
+		new Builder(typeCount).attach(tree);
+	}
+
+	private static class Builder {
+
+		// Dense counts for the node being summarized, and the ids that
+		// are non-zero in it
+		private final int[] counts;
+		private final int[] touched;
+		private int size = 0;
+
+		Builder(int typeCount) {
+			this.counts = new int[typeCount];
+			this.touched = new int[typeCount];
+		}
+
+		void attach(TreeChild node) {
+			if (node.typeCounts != null)
+				return;
+			if (node instanceof TreeBuffer) {
+				Uint16Array buffer = ((TreeBuffer) node).buffer;
+				for (int i = 0; i < buffer.length; i += 4)
+					this.add(buffer.get(i), 1);
+			} else {
+				TreeChild[] children = ((Tree) node).children;
+				// Children are finished before this node starts using the
+				// dense counts
+				for (TreeChild child : children)
+					this.attach(child);
+				for (TreeChild child : children) {
+					if (child instanceof Tree)
+						this.add(child.type.id, 1);
+					NodeTypeCounts counts = child.typeCounts;
+					for (int i = 0; i < counts.ids.length; i++)
+						this.add(counts.ids[i], counts.counts[i]);
+				}
+			}
+			node.typeCounts = this.finish();
+		}
+
+		private void add(int id, int count) {
+			if (this.counts[id] == 0)
+				this.touched[this.size++] = id;
+			this.counts[id] += count;
+		}
+
+		private NodeTypeCounts finish() {
+			int[] ids = Arrays.copyOf(this.touched, this.size), counts = new int[this.size];
+			Arrays.sort(ids);
+			for (int i = 0; i < ids.length; i++) {
+				counts[i] = this.counts[ids[i]];
+				this.counts[ids[i]] = 0;
+			}
+			this.size = 0;
+			return new NodeTypeCounts(ids, counts);
+		}
+	}
+
+	/// Count the nodes with type `id` in `tree`, which starts at `start`,
+	/// that touch the `from`/`to` range, using the attached counts for
+	/// subtrees that have them and lie inside the range, and skipping
+	/// subtrees whose counts show they don't contain the type.
+	static int count(Tree tree, int start, int id, int from, int to) {
+		int result = tree.type.id == id ? 1 : 0;
+		NodeTypeCounts counts = tree.typeCounts;
+		if (counts != null && (from <= start && start + tree.length <= to || counts.get(id) == 0))
+			return result + counts.get(id);
+		TreeChild[] children = tree.children;
+		for (int i = from > start ? tree.childEndingAfter(from - start - 1) : 0; i < children.length; i++) {
+			int childStart = start + tree.positions[i];
+			if (childStart > to)
+				break;
+			TreeChild child = children[i];
+			if (child instanceof Tree)
+				result += count((Tree) child, childStart, id, from, to);
+			else
+				result += count((TreeBuffer) child, childStart, id, from, to);
+		}
+		return result;
+	}
+
+	private static int count(TreeBuffer buffer, int start, int id, int from, int to) {
+		NodeTypeCounts counts = buffer.typeCounts;
+		if (counts != null && (from <= start && start + buffer.length <= to || counts.get(id) == 0))
+			return counts.get(id);
+		Uint16Array data = buffer.buffer;
+		int result = 0;
+		// Start positions only grow in prefix order
+		for (int index = 0; index < data.length;) {
+			if (start + data.get(index + 1) > to)
+				break;
+			if (start + data.get(index + 2) < from) {
+				index = data.get(index + 3);
+			} else {
+				if (data.get(index) == id)
+					result++;
+				index += 4;
+			}
+		}
+		return result;
+	}
+}
@@ -0,0 +1,274 @@
+package lezer.tree;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CodingErrorAction;
+import java.util.Arrays;
+
+/// An [input](#tree.Input) that reads its content from a stream as the
+/// parser asks for it, so that a document can be parsed while it's
+/// still arriving, rather than after it has been read into a string.
+/// Content is read into chunks that grow from
+/// [`MinChunkSize`](#tree.StreamingInput^MinChunkSize) to
+/// [`MaxChunkSize`](#tree.StreamingInput^MaxChunkSize) code units, and
+/// kept, since the parser may look back at it.
+///
+/// Reading a position that hasn't arrived yet blocks until it has, or
+/// until the stream ends. Unless the length is given up front, it
+/// isn't known before the end of the stream has been read, and
+/// [`length`](#tree.StreamingInput.length) returns
+/// [`UnknownLength`](#tree.StreamingInput^UnknownLength) until then.
+/// That doesn't keep the parser from finding the end of the document,
+/// since it only compares the length to positions it has already tried
+/// to read.
+///
+/// The stream is closed once its end has been read. I/O errors are
+/// thrown as `UncheckedIOException`. Instances aren't thread-safe, and
+/// neither are the inputs returned by
+/// [`clip`](#tree.StreamingInput.clip), which share their content with
+/// the input they were clipped from.
+public class StreamingInput implements Input {
+
+	/// The length reported before the end of a stream of unknown length
+	/// has been read.
+	public static final int UnknownLength = Integer.MAX_VALUE;
+
+	/// The size of the first chunk. Every next chunk is twice as big as
+	/// the one before it, up to
+	/// [`MaxChunkSize`](#tree.StreamingInput^MaxChunkSize).
+	public static final int MinChunkSize = 1 << 12;
+
+	/// The size of the largest chunks.
+	public static final int MaxChunkSize = 1 << 20;
+
+	private static final char[] noChars = new char[0];
+
+	private final Source source;
+	/// The given or clipped length, or `UnknownLength`.
+	private final int limit;
+	/// The cached chunk, and the range of the document it held when it
+	/// was loaded.
+	private char[] chunk = noChars;
+	private int chunkIndex = -1, chunkFrom = 0, chunkTo = 0;
+	private final CharView view = new CharView();
+
+	/// Create an input of unknown length that reads from `reader`.
+	public StreamingInput(Reader reader) {
+		this(reader, UnknownLength);
+	}
+
+	/// Create an input that reads `length` code units from `reader`. If
+	/// the stream ends before that, the input ends where it does.
+	public StreamingInput(Reader reader, int length) {
+		this(new Source(reader), length);
+	}
+
+	/// Create an input of unknown length that decodes `stream` with
+	/// `charset`. Malformed input is decoded as replacement characters.
+	public StreamingInput(InputStream stream, Charset charset) {
+		this(new InputStreamReader(stream, charset));
+	}
+
+	/// Create an input of unknown length that decodes the content of
+	/// `channel`, which must be in blocking mode, with `charset`.
+	/// Malformed input is decoded as replacement characters.
+	public StreamingInput(ReadableByteChannel channel, Charset charset) {
+		this(Channels.newReader(channel, charset.newDecoder().onMalformedInput(CodingErrorAction.REPLACE)
+				.onUnmappableCharacter(CodingErrorAction.REPLACE), -1));
+	}
+
+	private StreamingInput(Source source, int limit) {
+		this.source = source;
+		this.limit = limit;
+	}
+
+	/// The length of the input, which is
+	/// [`UnknownLength`](#tree.StreamingInput^UnknownLength) while the
+	/// end of a stream of unknown length hasn't been read.
+	@Override
+	public int length() {
+		return Math.min(this.limit, this.source.length);
+	}
+
+	/// The amount of code units that have been read from the stream so
+	/// far, which can be read without blocking.
+	public int available() {
+		return Math.min(this.limit, this.source.read);
+	}
+
+	@Override
+	public int get(int pos) {
+		if (pos >= this.chunkFrom && pos < this.chunkTo)
+			return this.chunk[pos - this.chunkFrom];
+		if (pos < 0 || pos >= this.limit || !this.source.fill(pos))
+			return -1;
+		this.load(pos);
+		return this.chunk[pos - this.chunkFrom];
+	}
+
+	@Override
+	public String lineAfter(int pos) {
+		return pos < 0 ? "" : this.read(pos, this.lineEnd(pos));
+	}
+
+	@Override
+	public CharSequence lineCharsAfter(int pos) {
+		return pos < 0 ? "" : this.readChars(pos, this.lineEnd(pos));
+	}
+
+	private int lineEnd(int pos) {
+		int end = pos;
+		scan: while (end < this.limit && this.source.fill(end)) {
+			if (end < this.chunkFrom || end >= this.chunkTo)
+				this.load(end);
+			for (; end < this.chunkTo; end++)
+				if (this.chunk[end - this.chunkFrom] == '\n')
+					break scan;
+		}
+		return end;
+	}
+
+	/// Clip `to` to the end of the content, reading up to it first.
+	private int end(int to) {
+		to = Math.min(to, this.limit);
+		if (to > 0)
+			this.source.fill(to - 1);
+		return Math.min(to, this.source.read);
+	}
+
+	@Override
+	public String read(int from, int to) {
+		to = this.end(to);
+		if (from >= to)
+			return "";
+		if (from < this.chunkFrom || from >= this.chunkTo)
+			this.load(from);
+		if (to <= this.chunkTo)
+			return new String(this.chunk, from - this.chunkFrom, to - from);
+		StringBuilder result = new StringBuilder(to - from);
+		for (int pos = from; pos < to;) {
+			if (pos >= this.chunkTo)
+				this.load(pos);
+			int end = Math.min(to, this.chunkTo);
+			result.append(this.chunk, pos - this.chunkFrom, end - pos);
+			pos = end;
+		}
+		return result.toString();
+	}
+
+	/// Returns a view on the chunk when the range lies inside a single
+	/// chunk.
+	@Override
+	public CharSequence readChars(int from, int to) {
+		to = this.end(to);
+		if (from >= to)
+			return "";
+		if (from < this.chunkFrom || from >= this.chunkTo)
+			this.load(from);
+		return to <= this.chunkTo ? this.view.set(this.chunk, from - this.chunkFrom, to - from)
+				: this.read(from, to);
+	}
+
+	/// Exposes the part of the chunk holding `pos` that has been read.
+	@Override
+	public boolean chunk(int pos, InputChunk chunk) {
+		if (pos < this.chunkFrom || pos >= this.chunkTo) {
+			if (pos < 0 || pos >= this.limit || !this.source.fill(pos))
+				return false;
+			this.load(pos);
+		}
+		chunk.set(this.chunk, 0, this.chunkFrom, this.chunkTo);
+		return true;
+	}
+
+	/// Doesn't read from the stream, so clipping an input of unknown
+	/// length doesn't block.
+	@Override
+	public Input clip(int at) {
+		return new StreamingInput(this.source, Math.min(at, this.limit));
+	}
+
+	/// Make the chunk holding `pos`, which must have been read and be
+	/// inside the input, the cached chunk.
+	private void load(int pos) {
+		Source source = this.source;
+		int index = this.chunkIndex;
+		// Sequential reads stay in the last chunk, as it fills, or move
+		// to the next one
+		if (index < 0 || pos < source.starts[index] || pos >= source.starts[index + 1]) {
+			index++;
+			if (index >= source.count || pos < source.starts[index] || pos >= source.starts[index + 1]) {
+				index = Arrays.binarySearch(source.starts, 0, source.count, pos);
+				if (index < 0)
+					index = -index - 2;
+			}
+		}
+		this.chunkIndex = index;
+		this.chunk = source.chunks[index];
+		this.chunkFrom = source.starts[index];
+		this.chunkTo = Math.min(source.starts[index + 1], this.limit);
+	}
+
+	/// The stream and the content read from it so far, shared by an
+	/// input and the inputs clipped from it.
+	private static final class Source {
+
+		/// Null once the end of the stream has been read.
+		private Reader reader;
+		char[][] chunks = new char[8][];
+		/// The document offset of each chunk, followed by the amount of
+		/// content read.
+		int[] starts = new int[9];
+		int count = 0;
+		int read = 0;
+		int length = UnknownLength;
+
+		Source(Reader reader) {
+			this.reader = reader;
+		}
+
+		/// Read until the content holds `pos` or the stream ends, and
+		/// return whether it holds `pos`.
+		boolean fill(int pos) {
+			while (pos >= this.read && this.reader != null)
+				this.readMore();
+			return pos < this.read;
+		}
+
+		private void readMore() {
+			char[] last = this.count == 0 ? null : this.chunks[this.count - 1];
+			if (last == null || this.read - this.starts[this.count - 1] == last.length) {
+				if (this.count == this.chunks.length) {
+					this.chunks = Arrays.copyOf(this.chunks, this.count << 1);
+					this.starts = Arrays.copyOf(this.starts, (this.count << 1) + 1);
+				}
+				last = new char[last == null ? MinChunkSize : Math.min(MaxChunkSize, last.length << 1)];
+				this.chunks[this.count] = last;
+				this.starts[this.count++] = this.read;
+			}
+			int offset = this.read - this.starts[this.count - 1], amount;
+			try {
+				amount = this.reader.read(last, offset, last.length - offset);
+				if (amount < 0) {
+					Reader reader = this.reader;
+					this.reader = null;
+					this.length = this.read;
+					reader.close();
+					return;
+				}
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+			if ((long) this.read + amount >= UnknownLength)
+				throw new IllegalArgumentException("Document too long for an Input");
+			this.read += amount;
+			this.starts[this.count] = this.read;
+		}
+	}
+}
@@ -37,6 +37,34 @@ public class StringInput implements Input {
 		return this.string.substring(from, Math.min(this.length, to));
 	}
 
+	@Override
+	public CharSequence readChars(int from, int to) {
+		// A new view per call, since this input is otherwise immutable
+		// and safe to share between threads. When the call is inlined,
+		// escape analysis usually removes the allocation.
+		from = Math.max(0, from);
+		return new CharView(this.string, from, Math.max(0, Math.min(this.length, to) - from));
+	}
+
+	@Override
+	public CharSequence lineCharsAfter(int pos) {
+		if (pos < 0)
+			return "";
+		int end = this.string.indexOf("\n", pos);
+		return new CharView(this.string, pos, Math.max(0, (end < 0 ? this.length : Math.min(end, this.length)) - pos));
+	}
+
+	@Override
+	public boolean chunk(int pos, InputChunk chunk) {
+		if (pos < 0 || pos >= this.length)
+			return false;
+		char[] buffer = chunk.buffer();
+		int end = Math.min(this.length, pos + buffer.length);
+		this.string.getChars(pos, end, buffer, 0);
+		chunk.set(buffer, 0, pos, end);
+		return true;
+	}
+
 	@Override
 	public Input clip(int at) {
 		return new StringInput(this.string, at);
@@ -0,0 +1,24 @@
+package lezer.tree;
+
+/// Summary bits stored in [`TreeChild.subtreeFlags`](#tree.TreeChild.subtreeFlags),
+/// describing the nodes inside a tree or tree buffer, so that
+/// navigation and error checks don't have to walk the subtree.
+public class SubtreeFlag {
+	/// Contains a node that syntax node navigation stops at: a
+	/// non-anonymous tree, or any node in a tree buffer.
+	public static final int Named = 1;
+	/// Contains an [error node](#tree.NodeType.isError).
+	public static final int Error = 2;
+	/// Contains a [skipped node](#tree.NodeType.isSkipped).
+	public static final int Skipped = 4;
+
+	/// The summary bits for a single node of the given type.
+	static int of(NodeType type) {
+		return (type.isAnonymous() ? 0 : Named) | (type.isError() ? Error : 0) | (type.isSkipped() ? Skipped : 0);
+	}
+
+	/// The summary bits for the given child and everything inside it.
+	static int of(TreeChild child) {
+		return child instanceof Tree ? of(child.type) | child.subtreeFlags : child.subtreeFlags;
+	}
+}
@@ -6,7 +6,7 @@ import java.util.List;
 /// tree. When iterating over large amounts of nodes, you may want to
 /// use a mutable [cursor](#tree.TreeCursor) instead, which is more
 /// efficient.
-interface SyntaxNode {
+public interface SyntaxNode {
 	/// The type of the node.
 	NodeType type();
 
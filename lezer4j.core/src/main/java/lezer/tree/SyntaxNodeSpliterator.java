@@ -0,0 +1,216 @@
+package lezer.tree;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Spliterator;
+import java.util.function.Consumer;
+
+import lezer.tree.typedarray.Uint16Array;
+
+/// Walks the non-anonymous nodes of a tree in prefix order, the order
+/// in which [`Tree.iterate`](#tree.Tree.iterate) enters them.
+///
+/// Pending work is kept as a stack of frames, each covering a range of
+/// siblings, either the children of a tree node or a run of siblings
+/// in a tree buffer. Splitting hands the first half of the outermost
+/// frame that still has two or more siblings left (along with all the
+/// work before it) to a new spliterator, so splits follow the shape of
+/// the tree and roughly halve the remaining text.
+class SyntaxNodeSpliterator implements Spliterator<SyntaxNode> {
+
+	private static class Frame {
+
+		/// The tree node whose children are iterated, or null for a
+		/// buffer frame.
+		final TreeNode tree;
+		/// The buffer iterated by a buffer frame.
+		final BufferContext buffer;
+		/// The next child (tree frames) or buffer index to visit.
+		int next;
+		/// The end of the range, exclusive.
+		int end;
+		/// The document position at which the range ends.
+		int endPos;
+		/// For buffer frames, the parent of the node at `next`, with
+		/// null standing for the tree node holding the buffer.
+		BufferNode parent;
+		/// Buffer frames cover a range of top-level nodes of their
+		/// buffer. This is the first of those that hasn't been entered.
+		int baseNext;
+
+		Frame(TreeNode tree, int next, int end, int endPos) {
+			this.tree = tree;
+			this.buffer = null;
+			this.next = next;
+			this.end = end;
+			this.endPos = endPos;
+		}
+
+		Frame(BufferContext buffer, int next, int end, int endPos) {
+			this.tree = null;
+			this.buffer = buffer;
+			this.next = this.baseNext = next;
+			this.end = end;
+			this.endPos = endPos;
+		}
+
+		Frame copy(int end, int endPos) {
+			Frame copy = this.tree != null ? new Frame(this.tree, this.next, end, endPos)
+					: new Frame(this.buffer, this.next, end, endPos);
+			copy.parent = this.parent;
+			copy.baseNext = this.baseNext;
+			return copy;
+		}
+
+		/// The document position of the next node in the range.
+		int pos() {
+			if (this.next == this.end)
+				return this.endPos;
+			return this.tree != null ? this.tree.from() + this.tree.node.positions[this.next]
+					: this.buffer.start + this.buffer.buffer.buffer.get(this.next + 1);
+		}
+	}
+
+	private final List<Frame> frames;
+	/// A node that has been reached but not yet handed out.
+	private SyntaxNode pending;
+
+	SyntaxNodeSpliterator(TreeNode top) {
+		this(new ArrayList<>(), top.type().isAnonymous() ? null : top);
+		this.frames.add(new Frame(top, 0, top.node.children.length, top.to()));
+	}
+
+	private SyntaxNodeSpliterator(List<Frame> frames, SyntaxNode pending) {
+		this.frames = frames;
+		this.pending = pending;
+	}
+
+	@Override
+	public boolean tryAdvance(Consumer<? super SyntaxNode> action) {
+		while (this.pending == null)
+			if (!this.step())
+				return false;
+		SyntaxNode node = this.pending;
+		this.pending = null;
+		action.accept(node);
+		return true;
+	}
+
+	/// Move to the next node in the iteration, storing it in `pending`
+	/// unless it is anonymous. Returns false when there are no nodes
+	/// left.
+	private boolean step() {
+		for (;;) {
+			if (this.frames.isEmpty())
+				return false;
+			Frame frame = this.frames.get(this.frames.size() - 1);
+			if (frame.next == frame.end) {
+				this.frames.remove(this.frames.size() - 1);
+				continue;
+			}
+			if (frame.tree != null) {
+				int i = frame.next++;
+				TreeChild child = frame.tree.node.children[i];
+				int start = frame.tree.from() + frame.tree.node.positions[i];
+				if (child instanceof TreeBuffer) {
+					TreeBuffer buffer = (TreeBuffer) child;
+					this.frames.add(new Frame(new BufferContext(frame.tree, buffer, i, start), 0,
+							buffer.buffer.length, start + buffer.length));
+				} else {
+					TreeNode node = new TreeNode((Tree) child, start, i, frame.tree);
+					this.frames.add(new Frame(node, 0, node.node.children.length, start + child.length));
+					if (!child.type.isAnonymous())
+						this.pending = node;
+				}
+				return true;
+			}
+			int index = frame.next;
+			frame.next += 4;
+			TreeBuffer buffer = frame.buffer.buffer;
+			while (frame.parent != null && buffer.buffer.get(frame.parent.index + 3) <= index)
+				frame.parent = frame.parent._parent;
+			BufferNode node = new BufferNode(frame.buffer, frame.parent, index);
+			frame.parent = node;
+			if (index == frame.baseNext)
+				frame.baseNext = buffer.buffer.get(index + 3);
+			if (!node.type.isAnonymous())
+				this.pending = node;
+			return true;
+		}
+	}
+
+	@Override
+	public Spliterator<SyntaxNode> trySplit() {
+		for (;;) {
+			for (int depth = 0; depth < this.frames.size(); depth++) {
+				Spliterator<SyntaxNode> prefix = this.split(depth);
+				if (prefix != null)
+					return prefix;
+			}
+			// Nothing to split yet. Hand off the pending node on its own,
+			// if any, so that the next call can descend into its children
+			if (this.pending != null && !this.frames.isEmpty()) {
+				SyntaxNodeSpliterator prefix = new SyntaxNodeSpliterator(new ArrayList<>(), this.pending);
+				this.pending = null;
+				return prefix;
+			}
+			if (this.pending != null || !this.step())
+				return null;
+		}
+	}
+
+	/// Try to split the frame at the given depth in two, returning a
+	/// spliterator covering everything before the second half of it.
+	private Spliterator<SyntaxNode> split(int depth) {
+		Frame frame = this.frames.get(depth);
+		int mid;
+		if (frame.tree != null) {
+			if (frame.end - frame.next < 2)
+				return null;
+			// Split at the child holding the middle of the remaining text
+			Tree tree = frame.tree.node;
+			int middle = (frame.pos() + frame.endPos) / 2 - frame.tree.from();
+			mid = Math.max(frame.next + 1, Math.min(frame.end - 1, tree.childEndingAfter(middle)));
+		} else {
+			// Only split between top-level nodes
+			Uint16Array buffer = frame.buffer.buffer.buffer;
+			int count = 0;
+			for (int i = frame.baseNext; i < frame.end; i = buffer.get(i + 3))
+				count++;
+			if (count < 2)
+				return null;
+			mid = frame.baseNext;
+			for (int i = count >> 1; i > 0; i--)
+				mid = buffer.get(mid + 3);
+		}
+		Frame before = frame.copy(mid, 0);
+		frame.next = mid;
+		before.endPos = frame.pos();
+		if (frame.tree == null) {
+			frame.parent = null;
+			frame.baseNext = mid;
+		}
+		List<Frame> frames = new ArrayList<>();
+		frames.add(before);
+		List<Frame> inner = this.frames.subList(depth + 1, this.frames.size());
+		frames.addAll(inner);
+		inner.clear();
+		SyntaxNodeSpliterator prefix = new SyntaxNodeSpliterator(frames, this.pending);
+		this.pending = null;
+		return prefix;
+	}
+
+	/// Estimated as the amount of text left to cover.
+	@Override
+	public long estimateSize() {
+		long size = this.pending != null ? 1 : 0;
+		for (Frame frame : this.frames)
+			size += frame.endPos - frame.pos();
+		return size;
+	}
+
+	@Override
+	public int characteristics() {
+		return ORDERED | NONNULL | IMMUTABLE;
+	}
+}
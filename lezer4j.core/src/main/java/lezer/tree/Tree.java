@@ -1,14 +1,21 @@
 package lezer.tree;
 
-import static java.util.Collections.emptyList;
 import static lezer.tree.TreeUtils.BalanceBranchFactor;
-import static lezer.tree.TreeUtils.CachedNode;
 import static lezer.tree.TreeUtils.DefaultBufferLength;
 import static lezer.tree.TreeUtils.balanceRange;
 import static lezer.tree.TreeUtils.buildTree;
 
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
-import java.util.stream.Collectors;;
+import java.util.RandomAccess;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+import lezer.tree.typedarray.TypedArrayArena;
+import lezer.tree.typedarray.Uint16Array;
 
 /// A piece of syntax tree. There are two ways to approach these
 /// trees: the way they are actually stored in memory, and the
@@ -23,7 +30,7 @@ import java.util.stream.Collectors;;
 /// use the `TreeCursor` interface instead, which provides a view on
 /// some part of this data structure, and can be used to move around
 /// to adjacent nodes.
-public class Tree extends TreeChild {
+public class Tree extends TreeChild implements AutoCloseable {
 
 	public interface TreeIteratorHandler {
 
@@ -31,33 +38,144 @@ public class Tree extends TreeChild {
 
 	}
 
-	public final List<TreeChild> children;
-	public final List<Integer> positions;
+/// A node visitor for the dispatch table form of
+/// [`iterate`](#tree.Tree.iterate).
+	public interface TreeVisitor {
+
+/// Called when entering a node. Return false to skip the node's
+/// children (and the call to `leave`).
+		boolean enter(NodeType type, int from, int to);
+
+/// Called when leaving a node that was entered.
+		default void leave(NodeType type, int from, int to) {
+		}
+	}
+
+	static final TreeChild[] noChildren = new TreeChild[0];
+	static final int[] noPositions = new int[0];
+
+	public final TreeChild[] children;
+	public final int[] positions;
 
 	public Integer contextHash;
 
+	// Set by `Tree.build` on the trees it returns, which hold the
+	// reference to their arena that `close` drops
+	boolean ownsArena;
+
+	// The node the last position-based cursor ended up on. Lookups
+	// tend to be close to each other, so starting from there saves
+	// descending from the top. Node objects are immutable, so sharing
+	// this between threads through a volatile field is safe.
+	private volatile TreeNode cachedNode;
+	// Built on first use. Threads racing to create it each build an
+	// equivalent table, so no locking is needed.
+	private volatile NodeHandles handles;
+	// The from/to pairs of the error nodes in the tree, collected by
+	// `Tree.build` or on first use.
+	volatile int[] errors;
+
 /// Construct a new tree. You usually want to go through
 /// [`Tree.build`](#tree.Tree^build) instead.
 	public Tree(NodeType type,
 			/// The tree's child nodes. Children small enough to fit in a
 			/// `TreeBuffer will be represented as such, other children can be
 			/// further `Tree` instances with their own internal structure.
-			List<TreeChild> children,
+			TreeChild[] children,
 			/// The positions (offsets relative to the start of this tree) of
 			/// the children.
-			List<Integer> positions,
+			int[] positions,
 			/// The total length of this tree
 			int length) {
-		super(type, length);
+		super(type, length, subtreeFlags(children));
 		this.children = children;
 		this.positions = positions;
+	}
+
+	private static int subtreeFlags(TreeChild[] children) {
+		int flags = 0;
+		for (TreeChild child : children)
+			flags |= SubtreeFlag.of(child);
+		return flags;
+	}
+
+	public Tree(NodeType type, List<TreeChild> children, List<Integer> positions, int length) {
+		this(type, children.isEmpty() ? noChildren : children.toArray(new TreeChild[children.size()]),
+				toIntArray(positions), length);
+	}
+
+	private static int[] toIntArray(List<Integer> list) {
+		if (list.isEmpty())
+			return noPositions;
+		int[] result = new int[list.size()];
+		for (int i = 0; i < result.length; i++)
+			result[i] = list.get(i);
+		return result;
+	}
+
+/// The index of the first child that ends after `pos` (relative to
+/// the start of this tree), or `children.length` if there is none.
+/// Children don't overlap, so their end positions are sorted.
+	int childEndingAfter(double pos) {
+		int lo = 0, hi = this.children.length;
+		while (lo < hi) {
+			int mid = (lo + hi) >>> 1;
+			if (this.positions[mid] + this.children[mid].length > pos)
+				hi = mid;
+			else
+				lo = mid + 1;
+		}
+		return lo;
+	}
+
+/// The index of the last child that starts before `pos` (relative to
+/// the start of this tree), or -1 if there is none.
+	int childStartingBefore(double pos) {
+		int lo = 0, hi = this.children.length;
+		while (lo < hi) {
+			int mid = (lo + hi) >>> 1;
+			if (this.positions[mid] < pos)
+				lo = mid + 1;
+			else
+				hi = mid;
+		}
+		return lo - 1;
+	}
+
+/// A read-only list view of the tree's children.
+	public List<TreeChild> getChildren() {
+		return Collections.unmodifiableList(Arrays.asList(this.children));
+	}
+
+/// A read-only list view of the positions of the tree's children.
+/// Positions are boxed as they are read.
+	public List<Integer> getPositions() {
+		return new PositionList(this.positions);
+	}
+
+	private static class PositionList extends AbstractList<Integer> implements RandomAccess {
+
+		private final int[] positions;
+
+		PositionList(int[] positions) {
+			this.positions = positions;
+		}
+
+		@Override
+		public Integer get(int index) {
+			return this.positions[index];
+		}
 
+		@Override
+		public int size() {
+			return this.positions.length;
+		}
 	}
 
 /// @internal
 @Override
 public String toString() {
-	String children = this.children.stream()//
+	String children = Arrays.stream(this.children)//
 	.map(c -> c.toString())
 	.collect(Collectors.joining(","));
 	return this.type.name == null || this.type.name.isEmpty() ? children :
@@ -66,7 +184,7 @@ public String toString() {
 }
 
 /// The empty tree
-	public static final Tree empty = new Tree(NodeType.none, emptyList(), emptyList(), 0);
+	public static final Tree empty = new Tree(NodeType.none, noChildren, noPositions, 0);
 
 /// Get a [tree cursor](#tree.TreeCursor) rooted at this tree. When
 /// `pos` is given, the cursor is [moved](#tree.TreeCursor.moveTo)
@@ -76,12 +194,12 @@ public String toString() {
 	}
 
 	public TreeCursor cursor(Integer pos, int side/* : -1 | 0 | 1 = 0 */) {
-		TreeNode scope = (pos != null && CachedNode.get(this) != null ? CachedNode.get(this)
-				: (TreeNode) this.topNode());
+		TreeNode cached = this.cachedNode;
+		TreeNode scope = pos != null && cached != null ? cached : (TreeNode) this.topNode();
 		TreeCursor cursor = new TreeCursor(scope);
 		if (pos != null) {
 			cursor.moveTo(pos, side);
-			CachedNode.put(this, cursor._tree);
+			this.cachedNode = cursor._tree;
 		}
 		return cursor;
 	}
@@ -99,6 +217,26 @@ public String toString() {
 		return new TreeNode(this, 0, 0, null);
 	}
 
+/// Get the [node handle table](#tree.NodeHandles) for this tree,
+/// which is created on first use.
+	public NodeHandles handles() {
+		NodeHandles handles = this.handles;
+		if (handles == null)
+			this.handles = handles = new NodeHandles(this);
+		return handles;
+	}
+
+/// The ranges of the [error nodes](#tree.NodeType.isError) in this
+/// tree, as an array of from/to pairs ordered by start position.
+/// Trees created by [`Tree.build`](#tree.Tree^build) collect these
+/// while building, so this doesn't walk the tree.
+	public int[] errors() {
+		int[] errors = this.errors;
+		if (errors == null)
+			this.errors = errors = ErrorRanges.collect(this);
+		return errors.length == 0 ? errors : errors.clone();
+	}
+
 /// Get the [syntax node](#tree.SyntaxNode) at the given position.
 /// If `side` is -1, this will move into nodes that end at the
 /// position. If 1, it'll move into nodes that start at the
@@ -113,6 +251,31 @@ public String toString() {
 		return this.cursor(pos, side).node();
 	}
 
+/// Resolve a batch of positions, as [`resolve`](#tree.Tree.resolve)
+/// would, returning the nodes in the same order. When the positions
+/// are sorted in ascending order, this walks the tree in a single
+/// sweep, only climbing out of the previous node as far as needed to
+/// reach the next position.
+	public SyntaxNode[] resolveAll(int[] positions, int side/* : -1 | 0 | 1 */) {
+		SyntaxNode[] result = new SyntaxNode[positions.length];
+		if (positions.length == 0)
+			return result;
+		TreeCursor cursor = new TreeCursor((TreeNode) this.topNode());
+		for (int i = 0; i < positions.length; i++)
+			result[i] = cursor.moveTo(positions[i], side).node();
+		this.cachedNode = cursor._tree;
+		return result;
+	}
+
+/// Stream the non-anonymous nodes in this tree, in the order in which
+/// [`iterate`](#tree.Tree.iterate) enters them. The stream splits
+/// along child ranges and tree buffer sibling ranges, so it can be
+/// made [parallel](#java.util.stream.BaseStream.parallel) to spread
+/// the work over a large tree across threads.
+	public Stream<SyntaxNode> nodes() {
+		return StreamSupport.stream(new SyntaxNodeSpliterator((TreeNode) this.topNode()), false);
+	}
+
 /// Iterate over the tree and its children, calling `enter` for any
 /// node that touches the `from`/`to` region (if given) before
 /// running over such a node's children, and `leave` (if given) when
@@ -150,17 +313,118 @@ public String toString() {
 		}
 	}
 
+/// Iterate over the tree like [`iterate`](#tree.Tree.iterate), but
+/// only call the visitors found in `visitors`, a table indexed by
+/// [node type id](#tree.NodeType.id). Nodes without a visitor are
+/// still descended into. The walk works on the raw tree and buffer
+/// data, so it allocates nothing. In trees built with
+/// [`countTypes`](#tree.BuildData.countTypes), subtrees that contain
+/// none of the visited types are skipped.
+	public void iterate(TreeVisitor[] visitors, int from, int to) {
+		visitTree(this, 0, visitors, from, to);
+	}
+
+	public void iterate(TreeVisitor[] visitors) {
+		iterate(visitors, 0, this.length);
+	}
+
+	private static TreeVisitor visitor(TreeVisitor[] visitors, NodeType type) {
+		return type.id < visitors.length && !type.isAnonymous() ? visitors[type.id] : null;
+	}
+
+	private static void visitTree(Tree tree, int start, TreeVisitor[] visitors, int from, int to) {
+		int end = start + tree.length;
+		TreeVisitor visitor = visitor(visitors, tree.type);
+		if (visitor != null && !visitor.enter(tree.type, start, end))
+			return;
+		TreeChild[] children = tree.children;
+		if (tree.typeCounts != null && !tree.typeCounts.any(visitors))
+			children = noChildren;
+		// Skip the children that end before `from`
+		for (int i = from > start ? tree.childEndingAfter(from - start - 1) : 0; i < children.length; i++) {
+			int childStart = start + tree.positions[i];
+			if (childStart > to)
+				break;
+			TreeChild child = children[i];
+			if (child.typeCounts != null && !child.typeCounts.any(visitors))
+				continue;
+			if (child instanceof TreeBuffer)
+				visitBuffer((TreeBuffer) child, childStart, 0, ((TreeBuffer) child).buffer.length, visitors, from, to);
+			else
+				visitTree((Tree) child, childStart, visitors, from, to);
+		}
+		if (visitor != null)
+			visitor.leave(tree.type, start, end);
+	}
+
+	private static void visitBuffer(TreeBuffer buffer, int start, int index, int endIndex, TreeVisitor[] visitors,
+			int from, int to) {
+		Uint16Array data = buffer.buffer;
+		while (index < endIndex) {
+			int nodeFrom = start + data.get(index + 1), nodeTo = start + data.get(index + 2);
+			int next = data.get(index + 3);
+			if (nodeFrom > to)
+				break;
+			if (nodeTo >= from) {
+				NodeType type = buffer.set.types.get(data.get(index));
+				TreeVisitor visitor = visitor(visitors, type);
+				if (visitor == null || visitor.enter(type, nodeFrom, nodeTo)) {
+					if (next > index + 4)
+						visitBuffer(buffer, start, index + 4, next, visitors, from, to);
+					if (visitor != null)
+						visitor.leave(type, nodeFrom, nodeTo);
+				}
+			}
+			index = next;
+		}
+	}
+
+/// Count the nodes of the given type in the tree, including the top
+/// node.
+	public int count(NodeType type) {
+		return this.count(type, 0, this.length);
+	}
+
+/// Count the nodes of the given type that touch the `from`/`to`
+/// range. In trees built with [`countTypes`](#tree.BuildData.countTypes)
+/// this only descends into subtrees that straddle the range's ends, so
+/// it takes logarithmic time in balanced trees. Otherwise, it walks the
+/// part of the tree that touches the range.
+	public int count(NodeType type, int from, int to) {
+		return from > this.length || to < 0 ? 0 : NodeTypeCounts.count(this, 0, type.id, from, to);
+	}
+
 /// Balance the direct children of this tree.
 	private Tree balance() {
 		return balance(DefaultBufferLength);
 	}
 
 	private Tree balance(int maxBufferLength) {
-		return this.children.size() <= BalanceBranchFactor ? this
-				: balanceRange(this.type, NodeType.none, this.children, this.positions, 0, this.children.size(), 0,
+		return this.children.length <= BalanceBranchFactor ? this
+				: balanceRange(this.type, NodeType.none, this.children, this.positions, 0, this.children.length, 0,
 						maxBufferLength, this.length, 0);
 	}
 
+/// Free the slabs holding the tree buffers of this tree, when it was
+/// built with [`packBuffers`](#tree.BuildData.packBuffers) enabled,
+/// and drop its hold on the slabs of older trees it reuses nodes
+/// from. Off-heap slabs are freed right away. Does nothing for other
+/// trees.
+///
+/// Trees from later (incremental) parses that reuse nodes of this
+/// tree keep its slabs alive until they are closed themselves, so the
+/// slabs are only freed once no such tree holds on to them. Closing a
+/// tree more than once, or closing a subtree, has no effect.
+	@Override
+	public void close() {
+		synchronized (this) {
+			if (!this.ownsArena)
+				return;
+			this.ownsArena = false;
+		}
+		this.arena.release();
+	}
+
 /// Build a tree from a postfix-ordered buffer of node information,
 /// or a cursor over such a buffer.
 	public static Tree build(BuildData data) {
@@ -16,6 +16,9 @@ public class TreeBuffer extends TreeChild {
 	// private final Uint16Array buffer;
 	public final Uint16Array buffer;
 	public final NodeSet set;
+	/// Built on first use, for buffers with enough nodes to benefit.
+	/// Racing threads may each build one, which is harmless.
+	private volatile TreeBufferIndex index;
 
 /// Create a tree buffer @internal
 	TreeBuffer(
@@ -27,11 +30,19 @@ public class TreeBuffer extends TreeChild {
 			NodeSet set,
 			/// An optional repeat node type associated with the buffer.
 			NodeType type) {
-		super(type, length);
+		super(type, length, subtreeFlags(buffer, set));
 		this.buffer = buffer;
 		this.set = set;
 	}
 
+	private static int subtreeFlags(Uint16Array buffer, NodeSet set) {
+		// Navigation stops at every node in a buffer, named or not
+		int flags = buffer.length > 0 ? SubtreeFlag.Named : 0;
+		for (int i = 0; i < buffer.length; i += 4)
+			flags |= SubtreeFlag.of(set.types.get(buffer.get(i)));
+		return flags;
+	}
+
 /// @internal
 	@Override
 	public String toString() {
@@ -62,9 +73,60 @@ public class TreeBuffer extends TreeChild {
 		return result + "(" + children.stream().collect(Collectors.joining(",")) + ")";
 	}
 
+/// The side index of this buffer, built on first use, or null when
+/// the buffer is too small to need one.
+	private TreeBufferIndex index() {
+		if (this.buffer.length < TreeBufferIndex.MinIndexedNodes << 2)
+			return null;
+		TreeBufferIndex index = this.index;
+		if (index == null)
+			this.index = index = new TreeBufferIndex(this.buffer);
+		return index;
+	}
+
+/// The amount of memory, in bytes, used by the side index that is
+/// built for large buffers when they are navigated, or 0 if there is
+/// no such index.
+	public int indexByteSize() {
+		TreeBufferIndex index = this.index;
+		return index == null ? 0 : index.byteSize();
+	}
+
+/// Find the index of the parent of the node at `index`, or -1 when
+/// it is a top-level node in the buffer. @internal
+	int findParent(int index) {
+		TreeBufferIndex sideIndex = this.index();
+		if (sideIndex != null)
+			return sideIndex.parent(index);
+		int parent = -1;
+		for (int i = 0; i < index;) {
+			int end = this.buffer.get(i + 3);
+			if (end > index) {
+				parent = i;
+				i += 4;
+			} else {
+				i = end;
+			}
+		}
+		return parent;
+	}
+
+/// Find the previous sibling of the node at `index`, whose parent's
+/// children start at `parentStart`, or -1 if it is the first child.
+/// @internal
+	int findPrevSibling(int parentStart, int index) {
+		if (index == parentStart)
+			return -1;
+		TreeBufferIndex sideIndex = this.index();
+		return sideIndex != null ? sideIndex.prevSibling(index) : this.findChild(parentStart, index, -1, After.None);
+	}
+
 /// @internal
 	public int findChild(int startIndex, int endIndex, int dir/* : 1 | -1 */, double after) {
 		Uint16Array buffer = this.buffer;
+		TreeBufferIndex index = this.index();
+		if (index != null && index.childCount(startIndex) >= TreeBufferIndex.MinIndexedChildren)
+			return index.findChild(startIndex, endIndex, dir, after);
 		int pick = -1;
 		for (int i = startIndex; i != endIndex; i = buffer.get(i + 3)) {
 			if (after != After.None) {
@@ -0,0 +1,151 @@
+package lezer.tree;
+
+import lezer.tree.typedarray.Uint16Array;
+
+/// A side index for a [tree buffer](#tree.TreeBuffer), built on
+/// demand for buffers with enough nodes to benefit from it. It lists,
+/// for every node, the buffer indices of its direct children, so that
+/// a child covering a given position can be found with a binary search
+/// instead of by walking the sibling chain, and it stores the parent
+/// and previous sibling of every node, so that moving up or backwards
+/// takes constant time.
+///
+/// The children of all nodes are stored in a single array, grouped by
+/// parent. Slot 0 holds the top-level nodes of the buffer, and the node
+/// at buffer index `i` uses slot `i / 4 + 1`, so the children of the
+/// node at index `i` start at `childFrom[(i + 4) / 4]`, which makes
+/// a `startIndex` as passed to `findChild` map directly to its slot.
+///
+/// Buffer indices fit in 16 bits, so all arrays are stored as `char`
+/// arrays, which makes the index take 8 bytes per node, the same as
+/// the buffer itself.
+class TreeBufferIndex {
+
+	/// Buffers holding fewer nodes than this aren't indexed.
+	static final int MinIndexedNodes = 64;
+
+	/// Sibling lists shorter than this are faster to scan linearly.
+	static final int MinIndexedChildren = 16;
+
+	/// Stored for parents and siblings that don't exist.
+	private static final char None = 0xffff;
+
+	private final Uint16Array buffer;
+	/// Per slot, the offset of its first entry in `children` (with an
+	/// extra entry at the end marking the end of the last slot).
+	private final char[] childFrom;
+	/// The buffer indices of the children of each slot, in order.
+	private final char[] children;
+	/// Per node, the buffer index of its parent and its previous
+	/// sibling, or `None`.
+	private final char[] parent;
+	private final char[] prevSibling;
+
+	TreeBufferIndex(Uint16Array buffer) {
+		this.buffer = buffer;
+		int nodes = buffer.length >> 2;
+		char[] parent = new char[nodes];
+		char[] childFrom = new char[nodes + 2];
+		// The end index of the enclosing nodes of the current position
+		int[] openEnd = new int[nodes + 1];
+		int[] openSlot = new int[nodes + 1];
+		int depth = 0;
+		openEnd[0] = buffer.length;
+		openSlot[0] = 0;
+		for (int i = 0; i < buffer.length; i += 4) {
+			while (i >= openEnd[depth])
+				depth--;
+			int slot = openSlot[depth];
+			parent[i >> 2] = slot == 0 ? None : (char) ((slot - 1) << 2);
+			childFrom[slot + 1]++;
+			int end = buffer.get(i + 3);
+			if (end > i + 4) {
+				depth++;
+				openEnd[depth] = end;
+				openSlot[depth] = (i >> 2) + 1;
+			}
+		}
+		for (int slot = 1; slot < childFrom.length; slot++)
+			childFrom[slot] += childFrom[slot - 1];
+		int[] fill = new int[nodes + 1];
+		char[] children = new char[nodes];
+		char[] prevSibling = new char[nodes];
+		// Prefix order visits the children of each node in order
+		for (int node = 0; node < nodes; node++) {
+			int slot = parent[node] == None ? 0 : (parent[node] >> 2) + 1;
+			int n = fill[slot]++;
+			children[childFrom[slot] + n] = (char) (node << 2);
+			prevSibling[node] = n == 0 ? None : children[childFrom[slot] + n - 1];
+		}
+		this.childFrom = childFrom;
+		this.children = children;
+		this.parent = parent;
+		this.prevSibling = prevSibling;
+	}
+
+	/// The amount of children of the node whose children start at
+	/// `startIndex`.
+	int childCount(int startIndex) {
+		int slot = startIndex >> 2;
+		return this.childFrom[slot + 1] - this.childFrom[slot];
+	}
+
+	/// The buffer index of the parent of the node at `index`, or -1.
+	int parent(int index) {
+		char parent = this.parent[index >> 2];
+		return parent == None ? -1 : parent;
+	}
+
+	/// The buffer index of the previous sibling of the node at `index`,
+	/// or -1.
+	int prevSibling(int index) {
+		char prev = this.prevSibling[index >> 2];
+		return prev == None ? -1 : prev;
+	}
+
+	/// Find the child of the node whose children start at `startIndex`
+	/// (or of the buffer itself, when that is 0), ending before
+	/// `endIndex`, with the same semantics as `TreeBuffer.findChild`.
+	int findChild(int startIndex, int endIndex, int dir/* : 1 | -1 */, double after) {
+		int slot = startIndex >> 2;
+		int from = this.childFrom[slot], to = this.childFrom[slot + 1];
+		// Drop children at or beyond `endIndex`
+		if (to > from && this.children[to - 1] >= endIndex)
+			to = lowerBound(from, to, endIndex, -1, false);
+		if (from == to)
+			return -1;
+		if (after == After.None)
+			return this.children[dir > 0 ? from : to - 1];
+		// The first child that ends after `after`
+		int endsAfter = lowerBound(from, to, after, 2, true);
+		if (dir > 0)
+			return endsAfter == to ? -1 : this.children[endsAfter];
+		// The last child that starts before `after`, not looking beyond
+		// the first child that touches it
+		int touches = Math.min(lowerBound(from, to, after, 2, false), to - 1);
+		int pick = Math.min(lowerBound(from, to, after, 1, false) - 1, touches);
+		return pick < from ? -1 : this.children[pick];
+	}
+
+	/// The first entry in `[from, to)` whose value is greater than (when
+	/// `strict`) or equal to `value`. A `field` of -1 compares the
+	/// buffer index itself, 1 the start position, and 2 the end
+	/// position.
+	private int lowerBound(int from, int to, double value, int field, boolean strict) {
+		while (from < to) {
+			int mid = (from + to) >>> 1, index = this.children[mid];
+			int v = field < 0 ? index : this.buffer.get(index + field);
+			if (strict ? v > value : v >= value)
+				to = mid;
+			else
+				from = mid + 1;
+		}
+		return from;
+	}
+
+	/// The amount of memory used by the index, in bytes, not counting
+	/// object headers.
+	int byteSize() {
+		return (this.childFrom.length + this.children.length + this.parent.length + this.prevSibling.length) * 2;
+	}
+}
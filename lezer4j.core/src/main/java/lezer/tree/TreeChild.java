@@ -1,14 +1,28 @@
 package lezer.tree;
 
+import lezer.tree.typedarray.TypedArrayArena;
+
 public class TreeChild {
 
 	public final NodeType type;
 	
 	public final int length;
 
-	public TreeChild(NodeType type, int length) {
+	/// [Summary bits](#tree.SubtreeFlag) for the nodes inside this
+	/// child, not including the child itself.
+	public final int subtreeFlags;
+
+	// Set by `Tree.build` when `countTypes` is enabled
+	NodeTypeCounts typeCounts;
+
+	// Set by `Tree.build` when buffers are packed into slabs, or the
+	// build reuses nodes that have an arena
+	TypedArrayArena arena;
+
+	public TreeChild(NodeType type, int length, int subtreeFlags) {
 		this.type = type;
 		this.length = length;
+		this.subtreeFlags = subtreeFlags;
 	}
 
 }
@@ -2,8 +2,7 @@ package lezer.tree;
 
 import static lezer.tree.TreeUtils.hasChild;
 
-import java.util.ArrayList;
-import java.util.List;
+import java.util.Arrays;
 
 /// A tree cursor object focuses on a given node in a syntax tree, and
 /// allows you to move to adjacent nodes.
@@ -20,7 +19,10 @@ public class TreeCursor {
 	/// @internal
 	public TreeNode _tree;
 	private BufferContext buffer;
-	private final List<Integer> stack;
+	/// The indices of the buffer nodes above the current one, up to
+	/// `depth`.
+	private int[] stack = new int[8];
+	private int depth;
 	private int index;
 	private BufferNode bufferNode;
 	private final boolean full;
@@ -32,15 +34,8 @@ public class TreeCursor {
 	}
 
 	public TreeCursor(BufferNode node, boolean full) {
-		this.stack = new ArrayList<>();
-		this._tree = node.context.parent;
-		this.buffer = node.context;
-		for (BufferNode n = node._parent; n != null; n = n._parent)
-			// this.stack.unshift(n.index);
-			this.stack.add(0, n.index);
-		this.bufferNode = node;
-		this.yieldBuf(node.index);
 		this.full = full;
+		this.reset(node);
 	}
 
 	public TreeCursor(TreeNode node) {
@@ -48,9 +43,38 @@ public class TreeCursor {
 	}
 
 	public TreeCursor(TreeNode node, boolean full) {
-		this.stack = new ArrayList<>();
-		this.yieldNode(node);
 		this.full = full;
+		this.reset(node);
+	}
+
+	/// Move the cursor to the top of the given tree, so that a single
+	/// cursor can be reused to walk many trees.
+	public TreeCursor reset(Tree tree) {
+		return this.reset(tree.topNode());
+	}
+
+	/// Move the cursor to the given node, which may be in another tree.
+	public TreeCursor reset(SyntaxNode node) {
+		this.depth = 0;
+		if (node instanceof TreeNode) {
+			this.buffer = null;
+			this.bufferNode = null;
+			this.yieldNode((TreeNode) node);
+			return this;
+		}
+		BufferNode bufferNode = (BufferNode) node;
+		this._tree = bufferNode.context.parent;
+		this.buffer = bufferNode.context;
+		for (BufferNode n = bufferNode._parent; n != null; n = n._parent)
+			this.depth++;
+		if (this.depth > this.stack.length)
+			this.stack = new int[this.depth];
+		int d = this.depth;
+		for (BufferNode n = bufferNode._parent; n != null; n = n._parent)
+			this.stack[--d] = n.index;
+		this.bufferNode = bufferNode;
+		this.yieldBuf(bufferNode.index);
+		return this;
 	}
 
 	/// Shorthand for `.type.name`.
@@ -116,14 +140,16 @@ public class TreeCursor {
 	public boolean enter(int dir/* : 1 | -1 */, double after) {
 		if (this.buffer == null)
 			return this.yield(
-					this._tree.nextChild(dir < 0 ? this._tree.node.children.size() - 1 : 0, dir, after, this.full));
+					this._tree.nextChild(dir < 0 ? this._tree.node.children.length - 1 : 0, dir, after, this.full));
 
 		TreeBuffer buffer = this.buffer.buffer;
 		int index = buffer.findChild(this.index + 4, buffer.buffer.get(this.index + 3), dir,
 				after == After.None ? After.None : after - this.buffer.start);
 		if (index < 0)
 			return false;
-		this.stack.add(this.index);
+		if (this.depth == this.stack.length)
+			this.stack = Arrays.copyOf(this.stack, this.depth << 1);
+		this.stack[this.depth++] = this.index;
 		return this.yieldBuf(index);
 	}
 
@@ -152,8 +178,8 @@ public class TreeCursor {
 	public boolean parent() {
 		if (this.buffer == null)
 			return this.yieldNode(this.full ? this._tree._parent : (TreeNode) this._tree.parent());
-		if (!this.stack.isEmpty())
-			return this.yieldBuf(this.stack.remove(this.stack.size() - 1));
+		if (this.depth > 0)
+			return this.yieldBuf(this.stack[--this.depth]);
 		TreeNode parent = this.full ? this.buffer.parent : this.buffer.parent.nextSignificantParent();
 		this.buffer = null;
 		return this.yieldNode(parent);
@@ -166,14 +192,14 @@ public class TreeCursor {
 					: this.yield(this._tree._parent.nextChild(this._tree.index + dir, dir, After.None, this.full));
 
 		TreeBuffer buffer = this.buffer.buffer;
-		int d = this.stack.size() - 1;
+		int d = this.depth - 1;
 		if (dir < 0) {
-			int parentStart = d < 0 ? 0 : this.stack.get(d) + 4;
+			int parentStart = d < 0 ? 0 : this.stack[d] + 4;
 			if (this.index != parentStart)
-				return this.yieldBuf(buffer.findChild(parentStart, this.index, -1, After.None));
+				return this.yieldBuf(buffer.findPrevSibling(parentStart, this.index));
 		} else {
 			int after = buffer.buffer.get(this.index + 3);
-			if (after < (d < 0 ? buffer.buffer.length : buffer.buffer.get(this.stack.get(d) + 3)))
+			if (after < (d < 0 ? buffer.buffer.length : buffer.buffer.get(this.stack[d] + 3)))
 				return this.yieldBuf(after);
 		}
 		return d < 0 ? this.yield(this.buffer.parent.nextChild(this.buffer.index + dir, dir, After.None, this.full))
@@ -199,9 +225,10 @@ public class TreeCursor {
 				if (this.index < buffer.buffer.buffer.length)
 					return false;
 			} else {
-				for (int i = 0; i < this.index; i++)
-					if (buffer.buffer.buffer.get(i + 3) < this.index)
-						return false;
+				// Only the buffer's first node has nothing but its parents,
+				// which are on the stack, before it
+				if (this.index > this.depth << 2)
+					return false;
 			}
 			index = buffer.index;
 			parent = buffer.parent;
@@ -212,8 +239,8 @@ public class TreeCursor {
 			// ({index, _parent: parent} = this._tree)
 		}
 		for (; parent != null; index = parent.index, parent = parent._parent) {
-			for (int i = index + dir, e = dir < 0 ? -1 : parent.node.children.size(); i != e; i += dir) {
-				TreeChild child = parent.node.children.get(i);
+			for (int i = index + dir, e = dir < 0 ? -1 : parent.node.children.length; i != e; i += dir) {
+				TreeChild child = parent.node.children[i];
 				if (this.full || !child.type.isAnonymous() || child instanceof TreeBuffer || hasChild((Tree) child))
 					return false;
 			}
@@ -282,7 +309,7 @@ public class TreeCursor {
 		BufferNode result = null;
 		int depth = 0;
 		if (cache != null && cache.context == this.buffer) {
-			scan: for (int index = this.index, d = this.stack.size(); d >= 0;) {
+			scan: for (int index = this.index, d = this.depth; d >= 0;) {
 				for (BufferNode c = cache; c != null; c = c._parent)
 					if (c.index == index) {
 						if (index == this.index)
@@ -291,11 +318,13 @@ public class TreeCursor {
 						depth = d + 1;
 						break scan;
 					}
-				index = this.stack.get(--d);
+				if (--d < 0)
+					break;
+				index = this.stack[d];
 			}
 		}
-		for (int i = depth; i < this.stack.size(); i++)
-			result = new BufferNode(this.buffer, result, this.stack.get(i));
+		for (int i = depth; i < this.depth; i++)
+			result = new BufferNode(this.buffer, result, this.stack[i]);
 		return this.bufferNode = new BufferNode(this.buffer, result, this.index);
 	}
 
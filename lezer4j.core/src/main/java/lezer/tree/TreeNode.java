@@ -44,12 +44,15 @@ class TreeNode implements SyntaxNode {
 
 	public SyntaxNode nextChild(int i, int dir/* : 1 | -1 */, double after, boolean full) {
 		for (TreeNode parent = this;;) {
-			List<TreeChild> children = null;
-			int e = 0;
-			for (children = parent.node.children, e = dir > 0 ? children.size() : -1; i != e; i += dir) {
-				List<Integer> positions = parent.node.positions;
-				TreeChild next = children.get(i);
-				int start = positions.get(i) + parent.from;
+			TreeChild[] children = parent.node.children;
+			int[] positions = parent.node.positions;
+			// Skip the children that lie entirely on the wrong side of `after`
+			if (after != After.None)
+				i = dir > 0 ? Math.max(i, parent.node.childEndingAfter(after - parent.from))
+						: Math.min(i, parent.node.childStartingBefore(after - parent.from));
+			for (int e = dir > 0 ? children.length : -1; i != e; i += dir) {
+				TreeChild next = children[i];
+				int start = positions[i] + parent.from;
 				if (after != After.None && (dir < 0 ? start >= after : start + next.length <= after))
 					continue;
 				if (next instanceof TreeBuffer) {
@@ -61,7 +64,7 @@ class TreeNode implements SyntaxNode {
 				} else if (full || (!next.type.isAnonymous() || hasChild((Tree) next))) {
 					TreeNode inner = new TreeNode((Tree) next, start, i, parent);
 					return full || !inner.type().isAnonymous() ? inner
-							: inner.nextChild(dir < 0 ? ((Tree) next).children.size() - 1 : 0, dir, after);
+							: inner.nextChild(dir < 0 ? ((Tree) next).children.length - 1 : 0, dir, after);
 				}
 			}
 			if (full || !parent.type().isAnonymous())
@@ -80,7 +83,7 @@ class TreeNode implements SyntaxNode {
 
 	@Override
 	public SyntaxNode lastChild() {
-		return this.nextChild(this.node.children.size() - 1, -1, After.None);
+		return this.nextChild(this.node.children.length - 1, -1, After.None);
 	}
 
 	@Override
@@ -90,7 +93,7 @@ class TreeNode implements SyntaxNode {
 
 	@Override
 	public SyntaxNode childBefore(int pos) {
-		return this.nextChild(this.node.children.size() - 1, -1, pos);
+		return this.nextChild(this.node.children.length - 1, -1, pos);
 	}
 
 	public TreeNode nextSignificantParent() {
@@ -107,12 +110,12 @@ class TreeNode implements SyntaxNode {
 
 	@Override
 	public SyntaxNode nextSibling() {
-		return this._parent != null ? this._parent.nextChild(this.index + 1, 1, -1) : null;
+		return this._parent != null ? this._parent.nextChild(this.index + 1, 1, After.None) : null;
 	}
 
 	@Override
 	public SyntaxNode prevSibling() {
-		return this._parent != null ? this._parent.nextChild(this.index - 1, -1, -1) : null;
+		return this._parent != null ? this._parent.nextChild(this.index - 1, -1, After.None) : null;
 	}
 
 	@Override
@@ -1,12 +1,14 @@
 package lezer.tree;
 
-import static java.util.Collections.reverse;
-
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
+import java.util.IdentityHashMap;
 import java.util.List;
-import java.util.WeakHashMap;
+import java.util.Set;
 
+import lezer.tree.typedarray.TypedArrayAllocator;
+import lezer.tree.typedarray.TypedArrayArena;
 import lezer.tree.typedarray.Uint16Array;
 
 public class TreeUtils {
@@ -16,8 +18,14 @@ public class TreeUtils {
 	/// The default maximum length of a `TreeBuffer` node.
 	public static final int DefaultBufferLength = 1024;
 
-	// FIXME : remove this static CACHE!!!
-	public static final WeakHashMap<Tree, TreeNode> CachedNode = new WeakHashMap<>();
+	/// The amount of elements in the first slab when tree buffers are
+	/// [packed](#tree.BuildData.packBuffers). Later slabs grow up to
+	/// [`MaxSlabLength`](#tree.MaxSlabLength).
+	public static final int FirstSlabLength = 1 << 12;
+
+	/// The maximum amount of elements in a slab when tree buffers are
+	/// packed.
+	public static final int MaxSlabLength = 1 << 22;
 
 	public static List<SyntaxNode> getChildren(SyntaxNode node, String type /* : string | number */,
 			String before/* : string | number | null */, String after/* : string | number | null */) {
@@ -48,9 +56,9 @@ public class TreeUtils {
 		return tree;
 	}
 
-	private static int takeNode(int parentStart, int minPos, List<TreeChild> children, List<Integer> positions,
-			int inRepeat, BufferCursor cursor, int contextHash, List<TreeChild> reused, int minRepeatType,
-			int maxBufferLength, List<NodeType> types, NodeSet nodeSet) {
+	private static int takeNode(int parentStart, int minPos, ChildList children, int inRepeat, BufferCursor cursor,
+			int contextHash, List<TreeChild> reused, int minRepeatType, int maxBufferLength, List<NodeType> types,
+			NodeSet nodeSet, TypedArrayAllocator allocator) {
 		int id = cursor.id();
 		int start = cursor.start();
 		int end = cursor.end();
@@ -58,8 +66,7 @@ public class TreeUtils {
 		int startPos = start - parentStart;
 		if (size < 0) {
 			if (size == -1) { // Reused node
-				children.add(reused.get(id));
-				positions.add(startPos);
+				children.add(reused.get(id), startPos);
 			} else { // Context change
 				contextHash = id;
 			}
@@ -73,7 +80,7 @@ public class TreeUtils {
 		if (end - start <= maxBufferLength && (buffer = findBufferSize(cursor.pos() - minPos, inRepeat, cursor,
 				minRepeatType, maxBufferLength)) != null) {
 			// Small enough for a buffer, and no reused nodes inside
-			Uint16Array data = new Uint16Array(buffer.size - buffer.skip);
+			Uint16Array data = allocator.allocateUint16(buffer.size - buffer.skip);
 			int endPos = cursor.pos() - buffer.size, index = data.length;
 			while (cursor.pos() > endPos)
 				index = copyToBuffer(buffer.start, data, index, inRepeat, cursor, minRepeatType);
@@ -82,32 +89,70 @@ public class TreeUtils {
 		} else { // Make it a node
 			int endPos = cursor.pos() - size;
 			cursor.next();
-			List<TreeChild> localChildren = new ArrayList<>();
-			List<Integer> localPositions = new ArrayList<>();
+			ChildList local = new ChildList();
 			int localInRepeat = id >= minRepeatType ? id : -1;
 			while (cursor.pos() > endPos) {
 				if (cursor.id() == localInRepeat)
 					cursor.next();
 				else {
-					contextHash = takeNode(start, endPos, localChildren, localPositions, localInRepeat, cursor,
-							contextHash, reused, minRepeatType, maxBufferLength, types, nodeSet);
+					contextHash = takeNode(start, endPos, local, localInRepeat, cursor, contextHash, reused,
+							minRepeatType, maxBufferLength, types, nodeSet, allocator);
 				}
 			}
-			reverse(localChildren);
-			reverse(localPositions);
+			local.reverse();
+			TreeChild[] localChildren = local.children();
+			int[] localPositions = local.positions();
 
-			if (localInRepeat > -1 && localChildren.size() > BalanceBranchFactor)
-				node = balanceRange(type, type, localChildren, localPositions, 0, localChildren.size(), 0,
+			if (localInRepeat > -1 && localChildren.length > BalanceBranchFactor)
+				node = balanceRange(type, type, localChildren, localPositions, 0, localChildren.length, 0,
 						maxBufferLength, end - start, contextHash);
 			else
 				node = withHash(new Tree(type, localChildren, localPositions, end - start), contextHash);
 		}
 
-		children.add(node);
-		positions.add(startPos);
+		children.add(node, startPos);
 		return contextHash;
 	}
 
+	/// Accumulates the children of a node, and their positions, while
+	/// it is being built.
+	private static class ChildList {
+
+		private TreeChild[] children = new TreeChild[4];
+		private int[] positions = new int[4];
+		private int size;
+
+		void add(TreeChild child, int pos) {
+			if (this.size == this.children.length) {
+				this.children = Arrays.copyOf(this.children, this.size << 1);
+				this.positions = Arrays.copyOf(this.positions, this.size << 1);
+			}
+			this.children[this.size] = child;
+			this.positions[this.size++] = pos;
+		}
+
+		void reverse() {
+			for (int i = 0, j = this.size - 1; i < j; i++, j--) {
+				TreeChild child = this.children[i];
+				this.children[i] = this.children[j];
+				this.children[j] = child;
+				int pos = this.positions[i];
+				this.positions[i] = this.positions[j];
+				this.positions[j] = pos;
+			}
+		}
+
+		TreeChild[] children() {
+			return this.size == 0 ? Tree.noChildren
+					: this.size == this.children.length ? this.children : Arrays.copyOf(this.children, this.size);
+		}
+
+		int[] positions() {
+			return this.size == 0 ? Tree.noPositions
+					: this.size == this.positions.length ? this.positions : Arrays.copyOf(this.positions, this.size);
+		}
+	}
+
 	private static class BufferSize {
 
 		private int size;
@@ -214,90 +259,136 @@ public class TreeUtils {
 	}
 
 	public static Tree buildTree(BuildData data) {
-		Object buffer = data.getBuffer();
 		NodeSet nodeSet = data.getNodeSet();
 		int topID = data.getTopID() != null ? data.getTopID() : 0;
 		int maxBufferLength = data.getMaxBufferLength() != null ? data.getMaxBufferLength() : DefaultBufferLength;
 		List<TreeChild> reused = data.getReused() != null ? data.getReused() : new ArrayList<>();
 		int minRepeatType = data.getMinRepeatType() != null ? data.getMinRepeatType() : nodeSet.types.size();
-
-		BufferCursor cursor = buffer instanceof BufferCursor ? (BufferCursor) buffer
-				: new FlatBufferCursor((List<Integer>) buffer, ((List<Integer>) buffer).size());
+		TypedArrayAllocator allocator = data.getAllocator() != null ? data.getAllocator() : TypedArrayAllocator.heap;
+
+		BufferCursor cursor = data.cursor();
+		// Buffers hold at most four values per node read from the
+		// cursor, so its size bounds the space needed for all of them.
+		// But trees made mostly of tree or reused nodes need much less,
+		// so slabs start small and grow.
+		TypedArrayArena arena = null;
+		if (data.getPackBuffers() != null && data.getPackBuffers())
+			allocator = arena = new TypedArrayArena(allocator, Math.min(cursor.pos(), FirstSlabLength),
+					MaxSlabLength);
 
 		List<NodeType> types = nodeSet.types;
 
 		int contextHash = 0;
 
-		List<TreeChild> children = new ArrayList<>();
-		List<Integer> positions = new ArrayList<>();
+		ChildList children = new ChildList();
 		while (cursor.pos() > 0)
-			contextHash = takeNode(data.getStart() != null ? data.getStart() : 0, 0, children, positions, -1, cursor,
-					contextHash, reused, minRepeatType, maxBufferLength, types, nodeSet);
-		int length = data.getLength() != null ? data.getLength() : (!children.isEmpty() ? positions.get(0) + children.get(0).length : 0);
+			contextHash = takeNode(data.getStart() != null ? data.getStart() : 0, 0, children, -1, cursor, contextHash,
+					reused, minRepeatType, maxBufferLength, types, nodeSet, allocator);
+		int length = data.getLength() != null ? data.getLength()
+				: (children.size > 0 ? children.positions[0] + children.children[0].length : 0);
 		// data.length ?? (children.length ? positions[0] + children[0].length : 0);
-		Collections.reverse(children);
-		Collections.reverse(positions);
-		return new Tree(types.get(topID), children, positions, length);
+		children.reverse();
+		Tree tree = new Tree(types.get(topID), children.children(), children.positions(), length);
+		if (arena == null && hasArena(reused))
+			arena = new TypedArrayArena(allocator, 1);
+		if (arena != null) {
+			attachArena(tree, arena, reused.isEmpty() ? Collections.emptySet() : newIdentitySet(reused));
+			tree.ownsArena = true;
+		}
+		tree.errors = ErrorRanges.collect(tree);
+		if (data.getCountTypes() != null && data.getCountTypes())
+			NodeTypeCounts.attach(tree, types.size());
+		return tree;
+	}
+
+	private static boolean hasArena(List<TreeChild> reused) {
+		for (TreeChild node : reused)
+			if (node.arena != null)
+				return true;
+		return false;
+	}
+
+	private static Set<TreeChild> newIdentitySet(List<TreeChild> nodes) {
+		Set<TreeChild> set = Collections.newSetFromMap(new IdentityHashMap<>());
+		set.addAll(nodes);
+		return set;
 	}
 
-	public static Tree balanceRange(NodeType outerType, NodeType innerType, List<TreeChild> children,
-			List<Integer> positions, int from, int to, int start, int maxBufferLength, int length, int contextHash) {
-		List<TreeChild> localChildren = new ArrayList<>();
-		List<Integer> localPositions = new ArrayList<>();
+	// Point the nodes created by a build at its arena, and have that
+	// arena retain the arenas of the reused nodes it contains, so that
+	// closing the tree those came from doesn't free them. Nodes created
+	// by the build have no arena yet, so any node that has one is
+	// reused, also when it isn't in `reused` itself, because
+	// `balanceRange` collapsed a reused repeat node into its children.
+	private static void attachArena(TreeChild node, TypedArrayArena arena, Set<TreeChild> reused) {
+		if (node.arena != null) {
+			if (node.arena != arena)
+				arena.retain(node.arena);
+			return;
+		}
+		if (reused.contains(node))
+			return;
+		node.arena = arena;
+		if (node instanceof Tree)
+			for (TreeChild child : ((Tree) node).children)
+				attachArena(child, arena, reused);
+	}
+
+	public static Tree balanceRange(NodeType outerType, NodeType innerType, TreeChild[] children, int[] positions,
+			int from, int to, int start, int maxBufferLength, int length, int contextHash) {
+		TreeChild[] localChildren;
+		int[] localPositions;
 		if (length <= maxBufferLength) {
-			for (int i = from; i < to; i++) {
-				localChildren.add(children.get(i));
-				localPositions.add(positions.get(i) - start);
-			}
+			localChildren = Arrays.copyOfRange(children, from, to);
+			localPositions = new int[to - from];
+			for (int i = from; i < to; i++)
+				localPositions[i - from] = positions[i] - start;
 		} else {
+			ChildList local = new ChildList();
 			int maxChild = (int) Math.max(maxBufferLength, Math.ceil(length * 1.5 / BalanceBranchFactor));
 			for (int i = from; i < to;) {
-				int groupFrom = i, groupStart = positions.get(i);
+				int groupFrom = i, groupStart = positions[i];
 				i++;
 				for (; i < to; i++) {
-					int nextEnd = positions.get(i) + children.get(i).length;
+					int nextEnd = positions[i] + children[i].length;
 					if (nextEnd - groupStart > maxChild)
 						break;
 				}
 				if (i == groupFrom + 1) {
-					TreeChild only = children.get(groupFrom);
+					TreeChild only = children[groupFrom];
 					if (only instanceof Tree && only.type == innerType && only.length > maxChild << 1) { // Too big,
 																											// collapse
 						Tree tree = (Tree) only;
-						for (int j = 0; j < tree.children.size(); j++) {
-							localChildren.add(tree.children.get(j));
-							localPositions.add(tree.positions.get(j) + groupStart - start);
-						}
+						for (int j = 0; j < tree.children.length; j++)
+							local.add(tree.children[j], tree.positions[j] + groupStart - start);
 						continue;
 					}
-					localChildren.add(only);
-				} else if (i == groupFrom + 1) {
-					localChildren.add(children.get(groupFrom));
+					local.add(only, groupStart - start);
 				} else {
 					Tree inner = balanceRange(innerType, innerType, children, positions, groupFrom, i, groupStart,
-							maxBufferLength, positions.get(i - 1) + children.get(i - 1).length - groupStart,
-							contextHash);
+							maxBufferLength, positions[i - 1] + children[i - 1].length - groupStart, contextHash);
 					if (innerType != NodeType.none && !containsType(inner.children, innerType))
 						inner = withHash(new Tree(NodeType.none, inner.children, inner.positions, inner.length),
 								contextHash);
-					localChildren.add(inner);
+					local.add(inner, groupStart - start);
 				}
-				localPositions.add(groupStart - start);
 			}
+			localChildren = local.children();
+			localPositions = local.positions();
 		}
 		return withHash(new Tree(outerType, localChildren, localPositions, length), contextHash);
 	}
 
-	private static boolean containsType(List<TreeChild> nodes, NodeType type) {
+	private static boolean containsType(TreeChild[] nodes, NodeType type) {
 		for (TreeChild elt : nodes)
 			if (elt.type == type)
 				return true;
 		return false;
 	}
 
+	/// Whether the tree has any descendants that syntax node navigation
+	/// stops at, as recorded in its [subtree flags](#tree.SubtreeFlag).
 	public static boolean hasChild(Tree tree) {
-		return tree.children//
-				.stream()//
-				.anyMatch(ch -> !ch.type.isAnonymous() || ch instanceof TreeBuffer || hasChild((Tree) ch));
+		return (tree.subtreeFlags & SubtreeFlag.Named) != 0;
 	}
 }
@@ -0,0 +1,252 @@
+package lezer.tree;
+
+import java.nio.ByteBuffer;
+
+/// An [input](#tree.Input) that reads UTF-8 encoded bytes directly,
+/// without decoding them into a string first. Positions are still
+/// counted in UTF-16 code units, as with every input, with characters
+/// outside the Basic Multilingual Plane taking up two positions (a
+/// surrogate pair).
+///
+/// On first use, the input scans its bytes once to find its length
+/// and to build a sparse table that holds the byte offset of every
+/// [`CheckpointInterval`](#tree.Utf8Input^CheckpointInterval)th code
+/// unit. Blocks between checkpoints that hold only ASCII are read
+/// directly, others are walked from the nearest checkpoint or from the
+/// last position read, so that sequential access is cheap. Runs of
+/// ASCII text are read directly once they have been reached. If the
+/// whole input is ASCII, positions are byte offsets, and no table is
+/// kept.
+///
+/// Malformed byte sequences are read as one U+FFFD replacement
+/// character per byte. Instances aren't thread-safe, and inputs
+/// returned by [`clip`](#tree.Utf8Input.clip) share their content and
+/// table with this one.
+public class Utf8Input implements Input {
+
+	/// The amount of code units between checkpoints.
+	public static final int CheckpointInterval = 1 << 7;
+	private static final int CheckpointShift = 7;
+
+	private static final char Replacement = '\ufffd';
+	/// The maximum length of the ASCII runs found after reading a
+	/// character.
+	private static final int MaxRunLength = 1 << 12;
+
+	private final ByteBuffer data;
+	private Index index;
+	private int length = -1;
+	/// A run of ASCII text around the last position read, which is read
+	/// directly, as its start in code units and bytes, and its length.
+	private int runFrom = 0, runByte = 0, runLength = 0;
+	/// The character boundary after the last character or run read, in
+	/// code units and bytes.
+	private int nextUnit = 0, nextByte = 0;
+
+	/// Create an input over the given bytes.
+	public Utf8Input(byte[] bytes) {
+		this(ByteBuffer.wrap(bytes));
+	}
+
+	/// Create an input over the remaining content of the given buffer,
+	/// which may be a direct or memory-mapped buffer. The buffer's
+	/// position and limit are not used afterwards.
+	public Utf8Input(ByteBuffer buffer) {
+		this.data = buffer.slice();
+	}
+
+	private Utf8Input(Utf8Input input, int length) {
+		this.data = input.data;
+		this.index = input.index;
+		this.length = length;
+	}
+
+	/// The checkpoint table, which is shared between an input and the
+	/// inputs clipped from it.
+	private static final class Index {
+		/// The code unit and byte offset of each checkpoint. Checkpoint
+		/// `i` is at the first character boundary at or after code unit
+		/// `i * CheckpointInterval`. A final entry holds the end of the
+		/// content. Null when the content is all ASCII.
+		final int[] units;
+		final int[] bytes;
+		/// Whether the block starting at each checkpoint is pure ASCII.
+		final boolean[] ascii;
+		final int length;
+
+		Index(ByteBuffer data) {
+			int end = data.limit(), blocks = (end >> CheckpointShift) + 2;
+			int[] units = new int[blocks], bytes = new int[blocks];
+			boolean[] ascii = new boolean[blocks];
+			int unit = 0, count = 0, next = 0;
+			boolean allAscii = true;
+			for (int b = 0; b < end;) {
+				if (unit >= next) {
+					units[count] = unit;
+					bytes[count] = b;
+					ascii[count++] = true;
+					next = count << CheckpointShift;
+				}
+				if (data.get(b) >= 0) {
+					unit++;
+					b++;
+				} else {
+					int length = sequence(data, b, end);
+					unit += length == 4 ? 2 : 1;
+					b += length;
+					ascii[count - 1] = allAscii = false;
+				}
+			}
+			units[count] = unit;
+			bytes[count] = end;
+			this.length = unit;
+			this.units = allAscii ? null : units;
+			this.bytes = allAscii ? null : bytes;
+			this.ascii = allAscii ? null : ascii;
+		}
+	}
+
+	private Index index() {
+		if (this.index == null)
+			this.index = new Index(this.data);
+		return this.index;
+	}
+
+	/// The length of the valid UTF-8 sequence starting at byte `b`, or 1
+	/// when the byte at `b` is ASCII or doesn't start a valid sequence.
+	private static int sequence(ByteBuffer data, int b, int end) {
+		int lead = data.get(b) & 0xff;
+		int extra = lead < 0xc2 ? 0 : lead < 0xe0 ? 1 : lead < 0xf0 ? 2 : lead < 0xf5 ? 3 : 0;
+		if (extra == 0 || b + extra >= end)
+			return 1;
+		int code = lead & (0x3f >> extra);
+		for (int i = 1; i <= extra; i++) {
+			int next = data.get(b + i);
+			if ((next & 0xc0) != 0x80)
+				return 1;
+			code = code << 6 | next & 0x3f;
+		}
+		if (extra == 2 && (code < 0x800 || code >= 0xd800 && code < 0xe000)
+				|| extra == 3 && (code < 0x10000 || code > 0x10ffff))
+			return 1;
+		return extra + 1;
+	}
+
+	/// The code point of the sequence of the given length at `b`.
+	private static int codePoint(ByteBuffer data, int b, int length) {
+		int lead = data.get(b);
+		if (length == 1)
+			return lead >= 0 ? lead : Replacement;
+		int code = lead & (0x3f >> (length - 1));
+		for (int i = 1; i < length; i++)
+			code = code << 6 | data.get(b + i) & 0x3f;
+		return code;
+	}
+
+	@Override
+	public int length() {
+		if (this.length < 0)
+			this.length = this.index().length;
+		return this.length;
+	}
+
+	@Override
+	public int get(int pos) {
+		int offset = pos - this.runFrom;
+		if (offset >= 0 && offset < this.runLength)
+			return this.data.get(this.runByte + offset);
+		return this.decode(pos);
+	}
+
+	private int decode(int pos) {
+		int length = this.length();
+		if (pos < 0 || pos >= length)
+			return -1;
+		ByteBuffer data = this.data;
+		Index index = this.index;
+		if (index.units == null) {
+			this.setRun(0, 0, length);
+			return data.get(pos);
+		}
+		int unit = this.nextUnit, b = this.nextByte;
+		// Reads just ahead of the last one continue from there, others
+		// start at the closest checkpoint
+		if (pos < unit || pos - unit > 8) {
+			int block = pos >> CheckpointShift;
+			if (index.units[block] > pos)
+				block--;
+			if (index.ascii[block]) {
+				this.setRun(index.units[block], index.bytes[block], index.units[block + 1] - index.units[block]);
+				return data.get(index.bytes[block] + pos - index.units[block]);
+			}
+			if (pos < unit || unit < index.units[block]) {
+				unit = index.units[block];
+				b = index.bytes[block];
+			}
+		}
+		for (;;) {
+			int lead = data.get(b);
+			if (lead >= 0) {
+				if (unit == pos) {
+					// Make the ASCII text starting here the current run
+					int end = b + 1, max = Math.min(data.limit(), b + MaxRunLength);
+					while (end < max && data.get(end) >= 0)
+						end++;
+					this.setRun(unit, b, end - b);
+					return lead;
+				}
+				unit++;
+				b++;
+				continue;
+			}
+			int size = sequence(data, b, data.limit()), units = size == 4 ? 2 : 1;
+			if (unit + units > pos) {
+				// Continue after this character, or at its start when this is
+				// the first half of a surrogate pair
+				boolean last = unit + units - 1 == pos;
+				this.nextUnit = last ? unit + units : unit;
+				this.nextByte = last ? b + size : b;
+				int code = codePoint(data, b, size);
+				if (units == 1)
+					return code;
+				return unit == pos ? Character.highSurrogate(code) : Character.lowSurrogate(code);
+			}
+			unit += units;
+			b += size;
+		}
+	}
+
+	private void setRun(int from, int b, int length) {
+		this.runFrom = from;
+		this.runByte = b;
+		this.runLength = Math.min(length, this.length - from);
+		this.nextUnit = from + length;
+		this.nextByte = b + length;
+	}
+
+	@Override
+	public String lineAfter(int pos) {
+		if (pos < 0)
+			return "";
+		int end = pos;
+		for (int ch; (ch = this.get(end)) >= 0 && ch != '\n';)
+			end++;
+		return this.read(pos, end);
+	}
+
+	@Override
+	public String read(int from, int to) {
+		to = Math.min(to, this.length());
+		if (from >= to)
+			return "";
+		StringBuilder result = new StringBuilder(to - from);
+		for (int pos = from; pos < to; pos++)
+			result.append((char) this.get(pos));
+		return result.toString();
+	}
+
+	@Override
+	public Input clip(int at) {
+		return new Utf8Input(this, Math.min(at, this.length()));
+	}
+}
@@ -0,0 +1,56 @@
+package lezer.tree.typedarray;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+
+/// Frees the memory of direct and memory-mapped byte buffers right
+/// away, rather than when they are garbage collected. @internal
+public final class BufferCleaner {
+
+	private BufferCleaner() {
+	}
+
+	private static final Cleaner cleaner = findCleaner();
+
+	private interface Cleaner {
+		void clean(ByteBuffer buffer) throws Exception;
+	}
+
+	// There is no public API to free a direct buffer, so this goes
+	// through `Unsafe.invokeCleaner` (Java 9+) or the buffer's
+	// `Cleaner` (Java 8). When neither is available, the memory is
+	// left to the garbage collector.
+	private static Cleaner findCleaner() {
+		try {
+			Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+			Method invokeCleaner = unsafeClass.getMethod("invokeCleaner", ByteBuffer.class);
+			Field theUnsafe = unsafeClass.getDeclaredField("theUnsafe");
+			theUnsafe.setAccessible(true);
+			Object unsafe = theUnsafe.get(null);
+			return buffer -> invokeCleaner.invoke(unsafe, buffer);
+		} catch (Exception | LinkageError e) {
+			// Not Java 9+
+		}
+		try {
+			Method getCleaner = Class.forName("sun.nio.ch.DirectBuffer").getMethod("cleaner");
+			Method clean = Class.forName("sun.misc.Cleaner").getMethod("clean");
+			return buffer -> clean.invoke(getCleaner.invoke(buffer));
+		} catch (Exception | LinkageError e) {
+			return null;
+		}
+	}
+
+	/// Free `buffer`, which must have been returned by
+	/// `ByteBuffer.allocateDirect` or `FileChannel.map` (not a slice or
+	/// duplicate of such a buffer), and must not be used afterwards.
+	public static void free(ByteBuffer buffer) {
+		if (cleaner == null)
+			return;
+		try {
+			cleaner.clean(buffer);
+		} catch (Exception e) {
+			// Leave it to the garbage collector
+		}
+	}
+}
@@ -0,0 +1,80 @@
+package lezer.tree.typedarray;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.ShortBuffer;
+
+/// A `Uint16Array` stored outside of the heap, in a direct
+/// `ByteBuffer`. Direct allocation is slow and, unless
+/// [`release`](#tree.TypedArray.release) is called, the memory is
+/// only freed once the buffer is garbage collected, so this is only
+/// worth it for large arrays, such as the slabs of a
+/// [`TypedArrayArena`](#tree.TypedArrayArena).
+public final class DirectUint16Array extends Uint16Array {
+
+	/// The storage shared by an array and its subarrays. `shorts` is
+	/// cleared before the memory is freed, and read once per access, so
+	/// that using a released array throws rather than touching freed
+	/// memory. (Releasing while another thread is still reading the
+	/// array isn't safe.)
+	private static class Memory {
+
+		ByteBuffer bytes;
+		volatile ShortBuffer shorts;
+
+		Memory(int length) {
+			this.bytes = ByteBuffer.allocateDirect(length * BYTES_PER_ELEMENT).order(ByteOrder.nativeOrder());
+			this.shorts = this.bytes.asShortBuffer();
+		}
+	}
+
+	private final Memory memory;
+	private final int offset;
+
+	public DirectUint16Array(int length) {
+		this(new Memory(length), 0, length);
+	}
+
+	private DirectUint16Array(Memory memory, int offset, int length) {
+		super(length);
+		this.memory = memory;
+		this.offset = offset;
+	}
+
+	private ShortBuffer shorts() {
+		ShortBuffer shorts = this.memory.shorts;
+		if (shorts == null)
+			throw new IllegalStateException("This array has been released");
+		return shorts;
+	}
+
+	@Override
+	public int get(int index) {
+		return this.shorts().get(this.offset + index) & 0xffff;
+	}
+
+	@Override
+	public void set(int index, int value) {
+		this.shorts().put(this.offset + index, (short) value);
+	}
+
+	@Override
+	public Uint16Array subarray(int begin, int end) {
+		if (begin < 0 || end > this.length || begin > end)
+			throw new IndexOutOfBoundsException("Invalid subarray " + begin + "-" + end + " of " + this.length);
+		return new DirectUint16Array(this.memory, this.offset + begin, end - begin);
+	}
+
+	@Override
+	public void release() {
+		ByteBuffer bytes;
+		synchronized (this.memory) {
+			bytes = this.memory.bytes;
+			if (bytes == null)
+				return;
+			this.memory.shorts = null;
+			this.memory.bytes = null;
+		}
+		BufferCleaner.free(bytes);
+	}
+}
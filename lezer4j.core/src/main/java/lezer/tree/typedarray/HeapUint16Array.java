@@ -0,0 +1,37 @@
+package lezer.tree.typedarray;
+
+/// A `Uint16Array` backed by a `short[]`. This is the default
+/// representation: allocation is cheap, memory is reclaimed by the
+/// garbage collector, and reads are plain array accesses.
+public final class HeapUint16Array extends Uint16Array {
+
+	private final short[] array;
+	private final int offset;
+
+	public HeapUint16Array(int length) {
+		this(new short[length], 0, length);
+	}
+
+	private HeapUint16Array(short[] array, int offset, int length) {
+		super(length);
+		this.array = array;
+		this.offset = offset;
+	}
+
+	@Override
+	public int get(int index) {
+		return this.array[this.offset + index] & 0xffff;
+	}
+
+	@Override
+	public void set(int index, int value) {
+		this.array[this.offset + index] = (short) value;
+	}
+
+	@Override
+	public Uint16Array subarray(int begin, int end) {
+		if (begin < 0 || end > this.length || begin > end)
+			throw new IndexOutOfBoundsException("Invalid subarray " + begin + "-" + end + " of " + this.length);
+		return new HeapUint16Array(this.array, this.offset + begin, end - begin);
+	}
+}
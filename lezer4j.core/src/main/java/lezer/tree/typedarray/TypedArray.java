@@ -1,25 +1,18 @@
 package lezer.tree.typedarray;
 
-import java.nio.ByteBuffer;
-import java.nio.ByteOrder;
-
-public class TypedArray {
+public abstract class TypedArray {
 
 	public final int length;
 
-	private ByteBuffer buffer;
-
-	protected TypedArray(int length, int bytesPerElement) {
+	protected TypedArray(int length) {
 		this.length = length;
-		createBuffer(length * bytesPerElement);
-	}
-
-	protected void createBuffer(int capacity) {
-		buffer = ByteBuffer.allocateDirect(capacity).order(ByteOrder.nativeOrder());
 	}
 
-	protected ByteBuffer getBuffer() {
-		return buffer;
+	/// Free the storage of this array, and of every array sharing it
+	/// through `subarray`, right away rather than when it is garbage
+	/// collected. Only has an effect on off-heap arrays, which can no
+	/// longer be read once released.
+	public void release() {
 	}
 
 }
@@ -0,0 +1,17 @@
+package lezer.tree.typedarray;
+
+/// Decides how the typed arrays used by syntax trees (the content
+/// of [tree buffers](#tree.TreeBuffer)) are stored.
+public interface TypedArrayAllocator {
+
+	/// Allocate an array of `length` zeroed values.
+	Uint16Array allocateUint16(int length);
+
+	/// Store arrays on the heap, in `short[]` arrays. This is the
+	/// default.
+	TypedArrayAllocator heap = HeapUint16Array::new;
+
+	/// Store arrays in direct byte buffers, outside of the heap.
+	TypedArrayAllocator direct = DirectUint16Array::new;
+
+}
@@ -0,0 +1,106 @@
+package lezer.tree.typedarray;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+
+/// An allocator that packs the arrays it hands out into a few large
+/// slabs, obtained from another allocator. Every array is a
+/// [subarray](#tree.Uint16Array.subarray) of a slab, so allocating
+/// is only a bump of an offset, arrays allocated one after the other
+/// sit next to each other in memory, and the whole arena can be
+/// [released](#tree.TypedArrayArena.release) at once.
+///
+/// Arenas are reference counted, so that an arena whose arrays are
+/// still used elsewhere can [retain](#tree.TypedArrayArena.retain)
+/// the arena they came from. Allocation is not thread-safe, reference
+/// counting is.
+public class TypedArrayArena implements TypedArrayAllocator {
+
+	private final TypedArrayAllocator slabs;
+	/// The length of the next slab, which doubles with every slab
+	/// until it reaches `maxSlabLength`.
+	private int slabLength;
+	private final int maxSlabLength;
+	private final List<Uint16Array> allocated = new ArrayList<>();
+	private Uint16Array slab;
+	private int used;
+	/// Starts at one, for the creator of the arena.
+	private int references = 1;
+	private final List<TypedArrayArena> retained = new ArrayList<>();
+
+	/// Create an arena that allocates slabs of `slabLength` elements
+	/// (or more, for bigger arrays) from `slabs`.
+	public TypedArrayArena(TypedArrayAllocator slabs, int slabLength) {
+		this(slabs, slabLength, slabLength);
+	}
+
+	/// Create an arena whose first slab holds `firstSlabLength`
+	/// elements, with every next slab twice as big as the one before,
+	/// up to `maxSlabLength`. This keeps the unused space small when
+	/// it isn't known up front how much will be allocated.
+	public TypedArrayArena(TypedArrayAllocator slabs, int firstSlabLength, int maxSlabLength) {
+		this.slabs = slabs;
+		this.maxSlabLength = Math.max(maxSlabLength, 1);
+		this.slabLength = Math.max(Math.min(firstSlabLength, this.maxSlabLength), 1);
+	}
+
+	@Override
+	public Uint16Array allocateUint16(int length) {
+		if (this.slab == null || this.slab.length - this.used < length) {
+			this.slab = this.slabs.allocateUint16(Math.max(length, this.slabLength));
+			this.allocated.add(this.slab);
+			this.used = 0;
+			this.slabLength = (int) Math.min((long) this.slabLength << 1, this.maxSlabLength);
+		}
+		Uint16Array result = this.slab.subarray(this.used, this.used + length);
+		this.used += length;
+		return result;
+	}
+
+	/// The total amount of elements held by the slabs of this arena.
+	public long capacity() {
+		long result = 0;
+		for (Uint16Array slab : this.allocated)
+			result += slab.length;
+		return result;
+	}
+
+	/// Keep `other` from being released until this arena is. Retaining
+	/// the same arena again has no effect.
+	public synchronized void retain(TypedArrayArena other) {
+		if (other == this || this.retained.contains(other))
+			return;
+		synchronized (other) {
+			if (other.references == 0)
+				throw new IllegalStateException("This arena has been released");
+			other.references++;
+		}
+		this.retained.add(other);
+	}
+
+	/// Drop a reference to this arena. When the last one is dropped,
+	/// all slabs are released, after which arrays allocated from this
+	/// arena must not be used, and the arenas it retains are released
+	/// in turn.
+	public void release() {
+		// Iterate rather than recurse, since a long series of incremental
+		// parses can leave a long chain of arenas that retain each other
+		Deque<TypedArrayArena> work = new ArrayDeque<>();
+		work.push(this);
+		while (!work.isEmpty()) {
+			TypedArrayArena arena = work.pop();
+			synchronized (arena) {
+				if (arena.references == 0 || --arena.references > 0)
+					continue;
+				for (Uint16Array slab : arena.allocated)
+					slab.release();
+				arena.allocated.clear();
+				arena.slab = null;
+				work.addAll(arena.retained);
+				arena.retained.clear();
+			}
+		}
+	}
+}
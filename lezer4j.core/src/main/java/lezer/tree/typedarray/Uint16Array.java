@@ -1,23 +1,21 @@
 package lezer.tree.typedarray;
 
-import java.nio.ShortBuffer;
-
-public class Uint16Array extends TypedArray {
+/// An array of unsigned 16-bit integers. Instances are created
+/// through a [`TypedArrayAllocator`](#tree.TypedArrayAllocator),
+/// which decides where the values are stored.
+public abstract class Uint16Array extends TypedArray {
 
 	public static final int BYTES_PER_ELEMENT = 2;
 
-	private ShortBuffer shortBuffer;
-
-	public Uint16Array(int length) {
-		super(length, BYTES_PER_ELEMENT);
-		shortBuffer = getBuffer().asShortBuffer();
+	protected Uint16Array(int length) {
+		super(length);
 	}
 
-	public int get(int index) {
-		return shortBuffer.get(index);
-	}
+	public abstract int get(int index);
 
-	public void set(int index, int value) {
-		shortBuffer.put(index, (short) value);
-	}
+	public abstract void set(int index, int value);
+
+	/// Create a view on the elements from `begin` up to `end`. The
+	/// view shares its storage with this array.
+	public abstract Uint16Array subarray(int begin, int end);
 }
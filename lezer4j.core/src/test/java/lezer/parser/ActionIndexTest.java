@@ -0,0 +1,122 @@
+package lezer.parser;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+public class ActionIndexTest {
+
+	// Parse tables with random action and skip sequences, some split
+	// with `Seq.Next` links, some ending with `Seq.Other`, and some
+	// holding `Err` entries
+	private static class Tables {
+
+		final int[] states;
+		final char[] data;
+
+		Tables(Random random, int stateCount, int termCount) {
+			this.states = new int[stateCount * ParseState.Size];
+			List<Character> data = new ArrayList<>();
+			for (int state = 0; state < stateCount; state++) {
+				for (int set = 0; set < 2; set++) {
+					this.states[state * ParseState.Size + (set > 0 ? ParseState.Skip : ParseState.Actions)] = data.size();
+					int entries = random.nextInt(set > 0 ? 4 : 40);
+					boolean split = entries > 1 && random.nextInt(3) == 0;
+					int link = -1;
+					for (int i = 0; i < entries; i++) {
+						if (split && i == entries / 2) {
+							data.add((char) Seq.End);
+							data.add((char) Seq.Next);
+							link = data.size();
+							data.add((char) 0);
+							data.add((char) 0);
+							// Unrelated content between the two parts
+							data.add((char) 7);
+							int target = data.size();
+							data.set(link, (char) target);
+						}
+						int term = random.nextInt(20) == 0 ? Term.Err : random.nextInt(termCount);
+						data.add((char) term);
+						data.add((char) (1 + random.nextInt(0xfff0)));
+						data.add((char) random.nextInt(4));
+					}
+					data.add((char) Seq.End);
+					if (random.nextInt(4) == 0) {
+						data.add((char) Seq.Other);
+						data.add((char) (1 + random.nextInt(100)));
+						data.add((char) 0);
+					} else {
+						data.add((char) Seq.Done);
+					}
+				}
+			}
+			this.data = new char[data.size()];
+			for (int i = 0; i < this.data.length; i++)
+				this.data[i] = data.get(i);
+		}
+
+		// The actions the parser's scan collects for `token` in one
+		// sequence
+		List<Integer> scanActions(int state, int token, int set) {
+			List<Integer> result = new ArrayList<>();
+			for (int i = this.states[state * ParseState.Size + (set > 0 ? ParseState.Skip : ParseState.Actions)];; i += 3) {
+				if (this.data[i] == Seq.End) {
+					if (this.data[i + 1] == Seq.Next)
+						i = ActionIndex.pair(this.data, i + 2);
+					else
+						break;
+				}
+				if (this.data[i] == token)
+					result.add(ActionIndex.pair(this.data, i + 1));
+			}
+			return result;
+		}
+	}
+
+	private static void assertIndexes(Tables tables, int stateCount, int termCount) {
+		for (int state = 0; state < stateCount; state++) {
+			ActionIndex index = ActionIndex.build(tables.states, tables.data, state, termCount);
+			for (int term = 0; term < termCount + 3; term++) {
+				assertEquals(ActionIndex.scan(tables.states, tables.data, state, term), index.hasAction(term));
+				int slot = index.slot(term);
+				for (int set = 0; set < 2; set++) {
+					List<Integer> actions = new ArrayList<>();
+					if (slot >= 0)
+						for (int i = index.start(slot, set); i < index.end(slot, set); i++)
+							actions.add(index.action(i));
+					assertEquals(tables.scanActions(state, term, set), actions);
+				}
+			}
+		}
+	}
+
+	@Test
+	public void indexesActions() {
+		Random random = new Random(1);
+		// Dense lookups
+		assertIndexes(new Tables(random, 200, 60), 200, 60);
+		// Hashed lookups
+		int wide = ActionIndex.DenseLimit * 2;
+		assertIndexes(new Tables(random, 200, wide), 200, wide);
+	}
+
+	@Test
+	public void findsOtherActions() {
+		// One action for term 3, then `Seq.Other` with action 9, and an
+		// empty skip sequence
+		char[] data = { 3, 5, 0, Seq.End, Seq.Other, 9, 0, Seq.End, Seq.Done };
+		int[] states = new int[ParseState.Size];
+		states[ParseState.Actions] = 0;
+		states[ParseState.Skip] = 7;
+		ActionIndex index = ActionIndex.build(states, data, 0, 10);
+		assertEquals(5, index.hasAction(3));
+		assertEquals(9, index.hasAction(4));
+		assertEquals(9, index.other(0));
+		assertEquals(0, index.other(1));
+		assertEquals(-1, index.slot(4));
+	}
+}
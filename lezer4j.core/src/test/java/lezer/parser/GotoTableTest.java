@@ -0,0 +1,87 @@
+package lezer.parser;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+import lezer.tree.RangeError;
+
+public class GotoTableTest {
+
+	// Two terms. Term 0 goes from states 1 and 5 to 7, from 2 to 8, and
+	// defaults to 9 (from 3). Term 1 goes from 4 to 6.
+	private static final char[] table = { 2, 3, 13, 4, 7, 1, 5, 2, 8, 2, 3, 9, 3, 3, 6, 4 };
+
+	// A table in the generator's format, with groups of random states
+	// for every term
+	private static char[] randomTable(Random random, int terms, int states) {
+		List<Character> groups = new ArrayList<>();
+		char[] offsets = new char[terms];
+		List<Character> all = new ArrayList<>();
+		for (int i = 0; i < states; i++)
+			all.add((char) i);
+		for (int term = 0; term < terms; term++) {
+			offsets[term] = (char) (terms + 1 + groups.size());
+			Collections.shuffle(all, random);
+			int used = random.nextInt(Math.min(states, 40)) + 1, pos = 0;
+			while (pos < used) {
+				int size = Math.min(used - pos, random.nextInt(6) + 1);
+				boolean last = pos + size == used;
+				groups.add((char) (size << 1 | (last ? 1 : 0)));
+				groups.add((char) random.nextInt(states));
+				for (int i = 0; i < size; i++)
+					groups.add(all.get(pos++));
+			}
+		}
+		char[] result = new char[terms + 1 + groups.size()];
+		result[0] = (char) terms;
+		System.arraycopy(offsets, 0, result, 1, terms);
+		for (int i = 0; i < groups.size(); i++)
+			result[terms + 1 + i] = groups.get(i);
+		return result;
+	}
+
+	@Test
+	public void looksUpGotoEntries() {
+		for (GotoTable goto_ : new GotoTable[] { new CompactGotoTable(table), new DenseGotoTable(table) }) {
+			assertEquals(7, goto_.get(1, 0, false));
+			assertEquals(7, goto_.get(5, 0, false));
+			assertEquals(8, goto_.get(2, 0, true));
+			assertEquals(9, goto_.get(3, 0, false));
+			assertEquals(-1, goto_.get(4, 0, false));
+			assertEquals(9, goto_.get(4, 0, true));
+			assertEquals(6, goto_.get(4, 1, false));
+			assertEquals(-1, goto_.get(5, 1, false));
+			assertEquals(6, goto_.get(100, 1, true));
+			assertEquals(-1, goto_.get(1, 2, true));
+		}
+
+		// 0xffff marks missing entries in the dense table
+		char[] unrepresentable = { 1, 2, 3, 0xffff, 1 };
+		assertEquals(0xffff, new CompactGotoTable(unrepresentable).get(1, 0, false));
+		assertThrows(RangeError.class, () -> new DenseGotoTable(unrepresentable));
+	}
+
+	@Test
+	public void expandsGotoTables() {
+		Random random = new Random(1);
+		for (int round = 0; round < 20; round++) {
+			char[] table = randomTable(random, random.nextInt(50) + 1, random.nextInt(300) + 1);
+			GotoTable compact = new CompactGotoTable(table), dense = new DenseGotoTable(table);
+			for (int term = 0; term <= table[0]; term++) {
+				for (int state = 0; state < 310; state++) {
+					assertEquals(compact.get(state, term, false), dense.get(state, term, false));
+					assertEquals(compact.get(state, term, true), dense.get(state, term, true));
+				}
+			}
+			assertTrue(dense.memory() > compact.memory());
+		}
+	}
+}
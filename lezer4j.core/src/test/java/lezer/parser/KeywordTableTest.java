@@ -0,0 +1,37 @@
+package lezer.parser;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+
+import lezer.tree.ChunkedInput;
+import lezer.tree.Input;
+import lezer.tree.StringInput;
+
+public class KeywordTableTest {
+
+	@Test
+	public void looksUpCharacterSequences() {
+		Map<String, Integer> keywords = new HashMap<>();
+		for (String word : new String[] { "if", "else", "while", "for", "let", "const", "return", "" })
+			keywords.put(word, keywords.size() + 10);
+		KeywordTable table = new KeywordTable(keywords);
+
+		Input string = new StringInput("if x else y");
+		assertEquals(10, table.get(string.readChars(0, 2)));
+		assertEquals(11, table.get(string.readChars(5, 9)));
+		assertEquals(-1, table.get(string.readChars(3, 4)));
+		assertEquals(-1, table.get(string.readChars(5, 8)));
+		assertEquals(17, table.get(string.readChars(3, 3)));
+		Input chunked = new ChunkedInput(Arrays.asList("ret".toCharArray(), "urn while".toCharArray()));
+		assertEquals(12, table.get(chunked.readChars(7, 12)));
+		assertEquals(16, table.get(chunked.readChars(0, 6)));
+		for (Map.Entry<String, Integer> entry : keywords.entrySet())
+			assertEquals((int) entry.getValue(), table.get(new StringBuilder(entry.getKey())));
+		assertEquals(-1, new KeywordTable(new HashMap<>()).get("if"));
+	}
+}
@@ -0,0 +1,140 @@
+package lezer.parser;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import lezer.tree.NodeSet;
+import lezer.tree.RangeError;
+
+public class ParseTablesTest {
+
+	@TempDir
+	Path dir;
+
+	// The encoding used by lezer-generator
+	private static String encode(long value) {
+		if (value == Decode.BigVal)
+			return String.valueOf((char) Decode.BigValCode);
+		StringBuilder result = new StringBuilder();
+		for (int first = Decode.Base;; first = 0) {
+			long low = value % Decode.Base, rest = value - low;
+			int ch = (int) low + first + Decode.Start;
+			if (ch >= Decode.Gap1)
+				ch++;
+			if (ch >= Decode.Gap2)
+				ch++;
+			result.insert(0, (char) ch);
+			if (rest == 0)
+				break;
+			value = rest / Decode.Base;
+		}
+		return result.toString();
+	}
+
+	private static String encodeArray(long... values) {
+		StringBuilder result = new StringBuilder(encode(values.length));
+		for (long value : values)
+			result.append(encode(value));
+		return result.toString();
+	}
+
+	private static ParserSpec spec() {
+		ParserSpec spec = new ParserSpec();
+		spec.version = File.Version;
+		spec.states = encodeArray(0, 1, 70000, 0xffffffffL);
+		spec.stateData = encodeArray(0, 45, 46, 0xffff, 2116, 12345);
+		spec.gotoTable = encodeArray(3, 4, 5, 6);
+		spec.nodeNames = "⚠ Program Number String";
+		spec.maxTerm = 9;
+		spec.repeatNodeCount = 2;
+		spec.nodeProps = new Object[][] { { 2, "a", -2, 1, 3, "b" } };
+		spec.skippedNodes = new int[] { 3 };
+		spec.tokenData = encodeArray(7, 8);
+		spec.tokenizers = new int[] { 0, ParserSpec.External, 1 };
+		spec.topRules = new LinkedHashMap<>();
+		spec.topRules.put("Program", new int[] { 0, 1 });
+		spec.nestedNames = new String[] { "inner" };
+		spec.nestedEnds = new String[] { encodeArray(1, 2, 3) };
+		spec.nestedPlaceholders = new int[] { 6 };
+		spec.dialects = Collections.singletonMap("ts", 4);
+		spec.specialized = new int[] { 2 };
+		spec.tokenPrec = 5;
+		spec.termNames = Collections.singletonMap(8, "keyword");
+		return spec;
+	}
+
+	private static void assertTables(ParseTables tables) {
+		assertArrayEquals(new int[] { 0, 1, 70000, 0xffffffff }, tables.states);
+		assertArrayEquals(new char[] { 0, 45, 46, 0xffff, 2116, 12345 }, tables.data);
+		assertArrayEquals(new char[] { 3, 4, 5, 6 }, tables.gotoTable);
+		assertArrayEquals(new char[] { 7, 8 }, tables.tokenData);
+		assertArrayEquals(new String[] { "⚠", "Program", "Number", "String", "", "" }, tables.nodeNames);
+		assertArrayEquals(new String[] { null, "b", "a", "b", null, null }, tables.nodeProps[0]);
+		assertEquals(4, tables.minRepeatTerm);
+		assertEquals(9, tables.maxTerm);
+		assertArrayEquals(new int[] { 0, ParserSpec.External, 1 }, tables.tokenizers);
+		assertArrayEquals(new int[] { 0, 1 }, tables.topRules.get("Program"));
+		assertArrayEquals(new char[] { 1, 2, 3 }, tables.nestedEnds[0]);
+		assertEquals(6, tables.nestedPlaceholders[0]);
+		assertEquals(Integer.valueOf(4), tables.dialects.get("ts"));
+		assertNull(tables.dynamicPrecedences);
+		assertArrayEquals(new char[] { 2 }, tables.specialized);
+		assertEquals(5, tables.tokenPrec);
+		assertEquals("keyword", tables.termNames.get(8));
+
+		NodeSet set = tables.nodeSet();
+		assertTrue(set.types.get(0).isError());
+		assertTrue(set.types.get(1).isTop());
+		assertTrue(set.types.get(3).isSkipped());
+		assertTrue(set.types.get(4).isAnonymous());
+		assertEquals("Number", set.types.get(2).name);
+	}
+
+	@Test
+	public void decodesSpecs() {
+		assertTables(ParseTables.decode(spec()));
+		ParserSpec old = spec();
+		old.version = File.Version - 1;
+		assertThrows(RangeError.class, () -> ParseTables.decode(old));
+	}
+
+	@Test
+	public void readsAndWritesBinaryTables() throws IOException {
+		ParseTables tables = ParseTables.decode(spec());
+		byte[] bytes = tables.write();
+		assertTables(ParseTables.read(ByteBuffer.wrap(bytes)));
+		ByteBuffer direct = ByteBuffer.allocateDirect(bytes.length + 3);
+		direct.put(new byte[3]).put(bytes).flip().position(3);
+		assertTables(ParseTables.read(direct));
+		Path path = this.dir.resolve("tables.bin");
+		tables.write(path);
+		assertTables(ParseTables.read(path));
+
+		Map<Integer, Integer> precedences = Collections.singletonMap(3, -1);
+		ParserSpec spec = spec();
+		spec.dynamicPrecedences = precedences;
+		spec.termNames = null;
+		ParseTables other = ParseTables.read(ByteBuffer.wrap(ParseTables.decode(spec).write()));
+		assertEquals(precedences, other.dynamicPrecedences);
+		assertNull(other.termNames);
+
+		assertThrows(IllegalArgumentException.class, () -> ParseTables.read(ByteBuffer.wrap(new byte[] { 1, 2, 3, 4 })));
+		assertThrows(IllegalArgumentException.class,
+				() -> ParseTables.read(ByteBuffer.wrap(bytes, 0, bytes.length - 10)));
+		bytes[8]++;
+		assertThrows(RangeError.class, () -> ParseTables.read(ByteBuffer.wrap(bytes)));
+	}
+}
@@ -0,0 +1,289 @@
+package lezer.tree;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.FilterReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public class InputTest {
+
+	@TempDir
+	Path dir;
+
+	// Lines of mixed ASCII, two- and three-byte characters and
+	// surrogate pairs, long enough to span several windows
+	private static String document(int lines) {
+		StringBuilder result = new StringBuilder();
+		Random random = new Random(1);
+		String[] words = { "let", "x", "=", "été", "世界", "😀", "1234567890" };
+		for (int i = 0; i < lines; i++) {
+			for (int j = random.nextInt(12); j >= 0; j--)
+				result.append(words[random.nextInt(words.length)]).append(' ');
+			result.append('\n');
+		}
+		return result.toString();
+	}
+
+	// Compare an input to the string it should hold, reading it in
+	// order, at random positions and in ranges
+	private static void assertHolds(String expected, Input input) {
+		assertEquals(expected.length(), input.length());
+		for (int i = 0; i < expected.length(); i++)
+			assertEquals(expected.charAt(i), input.get(i));
+		assertEquals(-1, input.get(-1));
+		assertEquals(-1, input.get(expected.length()));
+		Random random = new Random(2);
+		for (int i = 0; i < 200; i++) {
+			int pos = random.nextInt(expected.length());
+			assertEquals(expected.charAt(pos), input.get(pos));
+			int end = Math.min(expected.length(), pos + random.nextInt(100000));
+			assertEquals(expected.substring(pos, end), input.read(pos, end));
+			int line = expected.indexOf('\n', pos);
+			assertEquals(expected.substring(pos, line < 0 ? expected.length() : line), input.lineAfter(pos));
+			assertEquals(expected.substring(pos, line < 0 ? expected.length() : line),
+					input.lineCharsAfter(pos).toString());
+			CharSequence chars = input.readChars(pos, end);
+			assertEquals(end - pos, chars.length());
+			if (end > pos)
+				assertEquals(expected.charAt(pos), chars.charAt(0));
+			assertEquals(expected.substring(pos, end), chars.toString());
+		}
+		assertEquals(expected.substring(expected.length() - 10), input.read(expected.length() - 10, Integer.MAX_VALUE));
+		InputChunk chunk = new InputChunk();
+		StringBuilder chunks = new StringBuilder();
+		for (int pos = 0; input.chunk(pos, chunk); pos = chunk.to) {
+			assertTrue(chunk.from <= pos && pos < chunk.to);
+			chunks.append(chunk.chars, chunk.offset + pos - chunk.from, chunk.to - pos);
+		}
+		assertEquals(expected, chunks.toString());
+		for (int i = 0; i < 200; i++) {
+			int pos = random.nextInt(expected.length());
+			assertTrue(input.chunk(pos, chunk));
+			assertEquals(expected.charAt(pos), chunk.get(pos));
+		}
+		assertFalse(input.chunk(-1, chunk));
+		Input clipped = input.clip(expected.length() / 2);
+		assertEquals(expected.length() / 2, clipped.length());
+		assertEquals(-1, clipped.get(expected.length() / 2));
+		assertFalse(clipped.chunk(expected.length() / 2, chunk));
+		assertEquals(expected.substring(expected.length() / 2 - 100, expected.length() / 2),
+				clipped.read(expected.length() / 2 - 100, expected.length()));
+	}
+
+	private Path write(String name, byte[] content) throws IOException {
+		Path path = this.dir.resolve(name);
+		Files.write(path, content);
+		return path;
+	}
+
+	@Test
+	public void readsStrings() {
+		Input input = new StringInput("one\ntwo", 6);
+		assertEquals("ne", input.readChars(1, 3).toString());
+		assertEquals("tw", input.readChars(4, 10).toString());
+		assertEquals("one", input.lineCharsAfter(0).toString());
+		assertEquals("tw", input.lineCharsAfter(4).toString());
+		assertEquals("", input.lineCharsAfter(-1).toString());
+		InputChunk chunk = new InputChunk();
+		assertTrue(input.chunk(2, chunk));
+		assertEquals("e\ntw", new String(chunk.chars, chunk.offset, chunk.to - chunk.from));
+		assertFalse(input.chunk(6, chunk));
+
+		assertEquals("", input.readChars(-2, 0).toString());
+		assertEquals("on", input.readChars(-2, 2).toString());
+
+		// Views hash like strings, and equal views with the same content
+		Input code = new StringInput("if x else y");
+		CharSequence first = code.readChars(0, 2), second = code.readChars(5, 9);
+		assertEquals("if".hashCode(), first.hashCode());
+		assertEquals("ls", second.subSequence(1, 3).toString());
+		CharSequence other = new ChunkedInput(Collections.singletonList("else".toCharArray())).readChars(0, 4);
+		assertEquals(second, other);
+		assertEquals(other, second);
+		assertEquals(second.hashCode(), other.hashCode());
+		assertNotEquals(first, second);
+		assertNotEquals(second, "else");
+
+		// The default implementations copy through `get` and `read`
+		String text = document(100);
+		Input delegate = new StringInput(text);
+		assertHolds(text, new Input() {
+			@Override
+			public int length() {
+				return delegate.length();
+			}
+
+			@Override
+			public int get(int pos) {
+				return pos < 0 || pos >= text.length() ? -1 : text.charAt(pos);
+			}
+
+			@Override
+			public String lineAfter(int pos) {
+				return delegate.lineAfter(pos);
+			}
+
+			@Override
+			public String read(int from, int to) {
+				return delegate.read(from, to);
+			}
+
+			@Override
+			public Input clip(int at) {
+				return delegate.clip(at);
+			}
+		});
+	}
+
+	@Test
+	public void readsMappedFiles() throws IOException {
+		String text = document(20000);
+		for (Charset charset : new Charset[] { StandardCharsets.UTF_8, StandardCharsets.UTF_16LE }) {
+			Path path = write(charset.name(), text.getBytes(charset));
+			assertHolds(text, new MappedFileInput(path, charset));
+			// Small segments, so that windows cross segment boundaries
+			assertHolds(text, new MappedFileInput(path, charset, 4096));
+		}
+		String latin = text.replaceAll("[^\\x00-\\xff]", "?");
+		assertHolds(latin, new MappedFileInput(write("latin", latin.getBytes(StandardCharsets.ISO_8859_1)),
+				StandardCharsets.ISO_8859_1, 4096));
+
+		// Malformed UTF-8 is read as replacement characters
+		byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+		for (int i = 1000; i < bytes.length; i += 7919)
+			bytes[i] = (byte) 0xff;
+		assertHolds(new String(bytes, StandardCharsets.UTF_8), new MappedFileInput(write("bad", bytes)));
+
+		assertEquals(0, new MappedFileInput(write("empty", new byte[0])).length());
+
+		// The length of valid UTF-8 is counted without decoding, also
+		// when characters straddle segment boundaries
+		String accents = new String(new char[3000]).replace('\0', '\u00e9');
+		MappedFileInput input = new MappedFileInput(write("accents", accents.getBytes(StandardCharsets.UTF_8)),
+				StandardCharsets.UTF_8, 1001);
+		assertEquals(3000, input.length());
+		assertEquals(1, input.knownWindows());
+		assertHolds(accents, input);
+
+		// So is that of UTF-16. Malformed UTF-16, with unpaired
+		// surrogates and an odd byte at the end, is decoded
+		for (Charset charset : new Charset[] { StandardCharsets.UTF_16LE, StandardCharsets.UTF_16BE }) {
+			MappedFileInput utf16 = new MappedFileInput(write("utf16", text.getBytes(charset)), charset, 1001);
+			assertEquals(text.length(), utf16.length());
+			assertEquals(1, utf16.knownWindows());
+		}
+		Random random = new Random(5);
+		byte[] noise = new byte[20001];
+		for (int i = 0; i < noise.length; i++)
+			noise[i] = (byte) (random.nextInt(4) == 0 ? 0xd8 + random.nextInt(8) : random.nextInt(256));
+		for (Charset charset : new Charset[] { StandardCharsets.UTF_16LE, StandardCharsets.UTF_16BE }) {
+			MappedFileInput utf16 = new MappedFileInput(write("noise", noise), charset, 4096);
+			String expected = new String(noise, charset);
+			assertHolds(expected, utf16);
+		}
+
+		// Closing unmaps the file, after which only the current window
+		// can be read
+		MappedFileInput closed = new MappedFileInput(write("closed", text.getBytes(StandardCharsets.UTF_8)),
+				StandardCharsets.UTF_8, 4096);
+		assertEquals(text.charAt(0), closed.get(0));
+		closed.close();
+		closed.close();
+		assertEquals(text.charAt(0), closed.get(0));
+		assertThrows(IllegalStateException.class, () -> closed.get(text.length() - 1));
+	}
+
+	@Test
+	public void readsChunks() {
+		String text = document(5000);
+		List<char[]> chunks = new ArrayList<>();
+		chunks.add(new char[0]);
+		Random random = new Random(3);
+		for (int pos = 0; pos < text.length();) {
+			int end = Math.min(text.length(), pos + random.nextInt(random.nextBoolean() ? 10 : 5000));
+			chunks.add(text.substring(pos, end).toCharArray());
+			pos = end;
+		}
+		chunks.add(new char[0]);
+		assertHolds(text, new ChunkedInput(chunks));
+		assertEquals(0, new ChunkedInput(new ArrayList<>()).length());
+	}
+
+	@Test
+	public void readsUtf8() {
+		String text = document(5000);
+		byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+		assertHolds(text, new Utf8Input(bytes));
+		ByteBuffer direct = ByteBuffer.allocateDirect(bytes.length + 2);
+		direct.put((byte) 'x').put(bytes).flip().position(1);
+		assertHolds(text, new Utf8Input(direct));
+		String ascii = text.replaceAll("[^\\x00-\\x7f]", "?");
+		assertHolds(ascii, new Utf8Input(ascii.getBytes(StandardCharsets.UTF_8)));
+
+		// Every byte of a malformed sequence becomes a replacement char
+		Input bad = new Utf8Input(new byte[] { 'a', (byte) 0xff, (byte) 0xe4, (byte) 0xb8, 'b', (byte) 0xe4 });
+		assertEquals("a\ufffd\ufffd\ufffdb\ufffd", bad.read(0, 6));
+		assertEquals(6, bad.length());
+		assertEquals(0, new Utf8Input(new byte[0]).length());
+	}
+
+	// A reader that returns little content per call, like a slow
+	// connection
+	private static Reader trickle(String text) {
+		return new FilterReader(new StringReader(text)) {
+			@Override
+			public int read(char[] chars, int offset, int length) throws IOException {
+				return super.read(chars, offset, Math.min(length, 1000));
+			}
+		};
+	}
+
+	@Test
+	public void readsStreams() {
+		String text = document(5000);
+		StreamingInput input = new StreamingInput(trickle(text));
+		assertEquals(StreamingInput.UnknownLength, input.length());
+		assertEquals(text.charAt(10), input.get(10));
+		assertEquals(1000, input.available());
+		assertEquals(text.substring(0, 100), input.clip(100).read(0, 200));
+		assertEquals(StreamingInput.UnknownLength, input.length());
+		assertEquals(-1, input.get(text.length()));
+		assertHolds(text, input);
+
+		assertHolds(text, new StreamingInput(trickle(text), text.length()));
+		assertEquals(text.substring(0, 5000), new StreamingInput(trickle(text), 5000).read(0, 6000));
+		byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+		StreamingInput decoded = new StreamingInput(new ByteArrayInputStream(bytes), StandardCharsets.UTF_8);
+		assertEquals(text.substring(0, 10), decoded.read(0, 10));
+		decoded.get(text.length());
+		assertHolds(text, decoded);
+		StreamingInput channel = new StreamingInput(Channels.newChannel(new ByteArrayInputStream(bytes)),
+				StandardCharsets.UTF_8);
+		assertEquals(text.length(), channel.read(0, Integer.MAX_VALUE).length());
+		assertHolds(text, channel);
+
+		StreamingInput empty = new StreamingInput(new StringReader(""));
+		assertEquals(-1, empty.get(0));
+		assertEquals(0, empty.length());
+	}
+}
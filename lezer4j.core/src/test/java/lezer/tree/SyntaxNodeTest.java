@@ -1,5 +1,6 @@
 package lezer.tree;
 
+import static java.util.stream.Collectors.toList;
 import static lezer.tree.LezerTreeAssertion.anonTree;
 import static lezer.tree.LezerTreeAssertion.mk;
 import static lezer.tree.LezerTreeAssertion.recur;
@@ -10,6 +11,7 @@ import static org.junit.jupiter.api.Assertions.assertNull;
 
 import java.util.List;
 import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 
 import org.junit.jupiter.api.Test;
 
@@ -58,6 +60,21 @@ public class SyntaxNodeTest {
 		assertEquals(a, b);
 	}
 
+	@Test
+	public void resolvesConcurrently() {
+		Tree tree = mk("aaa[bbb(ccc)]".replace("b", "bbbbbbbbbb"));
+		List<String> expected = IntStream.range(0, tree.length).mapToObj(pos -> describe(tree.resolve(pos, 1)))
+				.collect(toList());
+		IntStream.range(0, 64).parallel().forEach(i -> {
+			for (int pos = (i * 7) % tree.length, n = 0; n < tree.length; n++, pos = (pos + 5) % tree.length)
+				assertEquals(expected.get(pos), describe(tree.resolve(pos, 1)));
+		});
+	}
+
+	private static String describe(SyntaxNode node) {
+		return node.name() + "@" + node.from() + "-" + node.to();
+	}
+
 	@Test
 	public void canGetChildrenByGroup() {
 		SyntaxNode tree = mk("aa(bb)[aabbcc]").topNode();
@@ -0,0 +1,438 @@
+package lezer.tree;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.IntBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import org.junit.jupiter.api.Test;
+
+import lezer.tree.typedarray.TypedArrayAllocator;
+import lezer.tree.typedarray.TypedArrayArena;
+
+public class TreeTest {
+
+	private static final NodeSet set = new NodeSet(Arrays.asList(NodeType.define(0, "T", null, true, null, null),
+			NodeType.define(1, "a", null, null, null, null), NodeType.define(2, "b", null, null, null, null)));
+
+	// T(a, b(a)), which `build` wraps in a top node, giving
+	// T(T(a, b(a)))
+	private static final int[] buffer = { 1, 0, 1, 4, 1, 2, 3, 4, 2, 1, 3, 8, 0, 0, 3, 16 };
+
+	private static Tree build(BuildData data) {
+		data.setTopID(0);
+		return Tree.build(data);
+	}
+
+	@Test
+	public void buildsFromFlatBuffers() {
+		List<Integer> list = Arrays.asList(1, 0, 1, 4, 1, 2, 3, 4, 2, 1, 3, 8, 0, 0, 3, 16);
+		String expected = build(new BuildData(list, set)).toString();
+		assertEquals("T(T(a,b(a)))", expected);
+		assertEquals(expected, build(new BuildData(buffer, set)).toString());
+		assertEquals(expected, build(new BuildData(IntBuffer.wrap(buffer), set)).toString());
+		IntBuffer offset = IntBuffer.allocate(buffer.length + 4);
+		offset.put(new int[] { 9, 9, 9, 9 }).put(buffer).position(4);
+		assertEquals(expected, build(new BuildData(offset, set)).toString());
+		assertEquals(4, offset.position());
+	}
+
+	@Test
+	public void buildsWithDirectBuffers() {
+		BuildData data = new BuildData(buffer, set);
+		data.setAllocator(TypedArrayAllocator.direct);
+		Tree tree = build(data);
+		assertEquals("T(T(a,b(a)))", tree.toString());
+		assertEquals("a", tree.resolve(2, 1).name());
+	}
+
+	@Test
+	public void packsBuffersIntoSlabs() {
+		BuildData data = new BuildData(buffer, set);
+		data.setAllocator(TypedArrayAllocator.direct);
+		data.setPackBuffers(true);
+		data.setMaxBufferLength(2);
+		Tree tree = build(data);
+		assertEquals("T(T(a,b(a)))", tree.toString());
+		tree.close();
+		assertThrows(IllegalStateException.class, () -> tree.toString());
+
+		// Slabs start small and double
+		TypedArrayArena arena = new TypedArrayArena(TypedArrayAllocator.heap, 4, 16);
+		arena.allocateUint16(3);
+		assertEquals(4, arena.capacity());
+		arena.allocateUint16(3);
+		assertEquals(12, arena.capacity());
+		arena.allocateUint16(10);
+		arena.allocateUint16(10);
+		arena.allocateUint16(10);
+		assertEquals(60, arena.capacity());
+	}
+
+	@Test
+	public void keepsReusedSlabsAlive() {
+		for (boolean pack : new boolean[] { true, false }) {
+			BuildData data = new BuildData(buffer, set);
+			data.setAllocator(TypedArrayAllocator.direct);
+			data.setPackBuffers(true);
+			data.setMaxBufferLength(2);
+			Tree old = build(data);
+			TreeChild reused = ((Tree) old.children[0]).children[1];
+			assertTrue(reused instanceof TreeBuffer);
+
+			// T(b(a), a), with the first child reused from the old tree
+			BuildData next = new BuildData(new int[] { 0, 0, 3, -1, 1, 3, 4, 4, 0, 0, 4, 12 }, set);
+			next.setReused(Arrays.asList(reused));
+			next.setAllocator(TypedArrayAllocator.direct);
+			next.setPackBuffers(pack);
+			Tree tree = build(next);
+			assertEquals("T(T(b(a),a))", tree.toString());
+			old.close();
+			old.close();
+			((Tree) tree.children[0]).close();
+			assertEquals("T(T(b(a),a))", tree.toString());
+			tree.close();
+			assertThrows(IllegalStateException.class, () -> tree.toString());
+		}
+
+		// A reused repeat node that is too big for the balanced tree
+		// around it is collapsed into its children, which keep pointing
+		// at the old tree's slabs
+		NodeSet repeatSet = new NodeSet(Arrays.asList(set.types.get(0), set.types.get(1), set.types.get(2),
+				NodeType.define(3)));
+		int[] oldBuffer = new int[42 * 4];
+		int size = 0;
+		for (int i = 0; i < 40; i++)
+			size = put(oldBuffer, size, 1, i * 2, i * 2 + 1, 4);
+		size = put(oldBuffer, size, 3, 0, 80, size + 4);
+		put(oldBuffer, size, 0, 0, 80, size + 4);
+		BuildData data = new BuildData(oldBuffer, repeatSet);
+		data.setAllocator(TypedArrayAllocator.direct);
+		data.setPackBuffers(true);
+		data.setMaxBufferLength(8);
+		data.setMinRepeatType(3);
+		Tree old = build(data);
+		Tree repeat = (Tree) ((Tree) old.children[0]).children[0];
+		TreeChild oldChild = repeat.children[0];
+
+		int[] newBuffer = new int[12 * 4];
+		size = put(newBuffer, 0, 0, 0, 80, -1);
+		for (int i = 0; i < 9; i++)
+			size = put(newBuffer, size, 1, 80 + i * 2, 81 + i * 2, 4);
+		size = put(newBuffer, size, 3, 0, 98, size + 4);
+		put(newBuffer, size, 0, 0, 98, size + 4);
+		BuildData next = new BuildData(newBuffer, repeatSet);
+		next.setReused(Arrays.asList(repeat));
+		next.setAllocator(TypedArrayAllocator.direct);
+		next.setPackBuffers(true);
+		next.setMaxBufferLength(8);
+		next.setMinRepeatType(3);
+		Tree tree = build(next);
+		Tree newRepeat = (Tree) ((Tree) tree.children[0]).children[0];
+		assertTrue(Arrays.asList(newRepeat.children).contains(oldChild));
+		assertSame(old.arena, oldChild.arena);
+		String content = tree.toString();
+		old.close();
+		assertEquals(content, tree.toString());
+		tree.close();
+		assertThrows(IllegalStateException.class, () -> tree.toString());
+	}
+
+	// T(a, ..., b(a), ...), with every tenth child a `b`, and a gap
+	// after each child
+	private static int[] wideBuffer(int count) {
+		int[] result = new int[count * 8 + 4];
+		int size = 0;
+		for (int i = 0; i < count; i++) {
+			int start = i * 2;
+			boolean parent = i % 10 == 9;
+			if (parent)
+				size = put(result, size, 1, start, start + 1, 4);
+			size = put(result, size, parent ? 2 : 1, start, start + 1, parent ? 8 : 4);
+		}
+		size = put(result, size, 0, 0, count * 2, size + 4);
+		return Arrays.copyOf(result, size);
+	}
+
+	private static int put(int[] buffer, int size, int id, int start, int end, int nodeSize) {
+		buffer[size] = id;
+		buffer[size + 1] = start;
+		buffer[size + 2] = end;
+		buffer[size + 3] = nodeSize;
+		return size + 4;
+	}
+
+	@Test
+	public void findsChildrenOfWideNodes() {
+		int count = 200;
+		// Once as tree nodes, once as a single indexed buffer
+		for (int maxBufferLength : new int[] { 1, 1024 }) {
+			BuildData data = new BuildData(wideBuffer(count), set);
+			data.setMaxBufferLength(maxBufferLength);
+			Tree tree = build(data);
+			SyntaxNode wide = tree.topNode().firstChild();
+			assertEquals(count * 2, wide.to());
+			assertNull(wide.childAfter(count * 2 - 1));
+			assertNull(wide.childBefore(0));
+			for (int i = 0; i < count; i++) {
+				int start = i * 2;
+				assertEquals(start, wide.childAfter(start).from());
+				assertEquals(start, wide.childBefore(start + 1).from());
+				if (i > 0)
+					assertEquals(start - 2, wide.childBefore(start).from());
+				if (i < count - 1)
+					assertEquals(start + 2, wide.childAfter(start + 1).from());
+				assertEquals(start, tree.resolve(start, 1).from());
+				assertEquals(start, tree.resolve(start + 1, -1).from());
+				assertEquals("T", tree.resolve(start + 1, 1).name());
+			}
+			assertEquals("b", tree.resolve(18, 1).parent().name());
+			assertEquals("b", tree.resolve(19, -1).parent().name());
+		}
+	}
+
+	@Test
+	public void resolvesBatchesOfPositions() {
+		Tree tree = build(new BuildData(wideBuffer(100), set));
+		int[] positions = new int[201];
+		for (int i = 0; i < positions.length; i++)
+			positions[i] = i;
+		for (int side = -1; side <= 1; side++) {
+			SyntaxNode[] nodes = tree.resolveAll(positions, side);
+			assertEquals(positions.length, nodes.length);
+			for (int i = 0; i < positions.length; i++) {
+				SyntaxNode expected = tree.resolve(positions[i], side);
+				assertEquals(expected.name() + expected.from() + "-" + expected.to(),
+						nodes[i].name() + nodes[i].from() + "-" + nodes[i].to());
+			}
+		}
+		assertEquals(0, tree.resolveAll(new int[0], 1).length);
+	}
+
+	private static String describe(SyntaxNode node) {
+		return node.name() + node.from() + "-" + node.to();
+	}
+
+	@Test
+	public void streamsNodes() {
+		Tree tree = build(new BuildData(buffer, set));
+		assertEquals("T0-3,T0-3,a0-1,b1-3,a2-3",
+				tree.nodes().map(TreeTest::describe).collect(Collectors.joining(",")));
+
+		// Both as tree nodes and buffers
+		for (int maxBufferLength : new int[] { 1, 1024 }) {
+			BuildData data = new BuildData(wideBuffer(200), set);
+			data.setMaxBufferLength(maxBufferLength);
+			Tree wide = build(data);
+			List<String> entered = new ArrayList<>();
+			wide.iterate((type, from, to) -> entered.add(type.name + from + "-" + to), null, null, null);
+			assertEquals(222, entered.size());
+			assertEquals(entered, wide.nodes().map(TreeTest::describe).collect(Collectors.toList()));
+			assertEquals(entered, wide.nodes().parallel().map(TreeTest::describe).collect(Collectors.toList()));
+			assertEquals("b", wide.nodes().filter(n -> n.from() == 38).skip(1).findFirst().get().parent().name());
+		}
+	}
+
+	@Test
+	public void iteratesWithVisitorTables() {
+		for (int maxBufferLength : new int[] { 1, 1024 }) {
+			BuildData data = new BuildData(wideBuffer(200), set);
+			data.setMaxBufferLength(maxBufferLength);
+			Tree tree = build(data);
+			for (int[] range : new int[][] { { 0, 400 }, { 51, 75 }, { 38, 38 } }) {
+				List<String> expected = new ArrayList<>(), actual = new ArrayList<>();
+				tree.iterate((type, from, to) -> expected.add(type.name + from), (type, from, to) -> {
+					return expected.add("/" + type.name + to);
+				}, range[0], range[1]);
+				Tree.TreeVisitor visitor = new Tree.TreeVisitor() {
+					@Override
+					public boolean enter(NodeType type, int from, int to) {
+						return actual.add(type.name + from);
+					}
+
+					@Override
+					public void leave(NodeType type, int from, int to) {
+						actual.add("/" + type.name + to);
+					}
+				};
+				tree.iterate(new Tree.TreeVisitor[] { visitor, visitor, visitor }, range[0], range[1]);
+				assertEquals(expected, actual);
+			}
+
+			// Only visit `b` nodes, and don't enter them
+			int[] count = { 0 };
+			tree.iterate(new Tree.TreeVisitor[] { null, null, (type, from, to) -> count[0]++ < 0 });
+			assertEquals(20, count[0]);
+		}
+	}
+
+	private static List<String> walk(TreeCursor cursor) {
+		List<String> result = new ArrayList<>();
+		do
+			result.add(cursor.name() + cursor.from());
+		while (cursor.next());
+		return result;
+	}
+
+	@Test
+	public void reusesCursors() {
+		Tree small = build(new BuildData(buffer, set));
+		BuildData data = new BuildData(wideBuffer(200), set);
+		Tree wide = build(data);
+		TreeCursor cursor = small.cursor();
+		assertEquals(walk(small.cursor()), walk(cursor));
+		assertEquals(walk(wide.cursor()), walk(cursor.reset(wide)));
+		assertEquals(walk(small.cursor()), walk(cursor.reset(small)));
+
+		// Resetting to a node inside a buffer keeps the path to its parents
+		cursor.reset(wide.resolve(18, 1));
+		assertEquals("a", cursor.name());
+		assertTrue(cursor.parent());
+		assertEquals("b", cursor.name());
+		assertTrue(cursor.parent());
+		assertEquals("T", cursor.name());
+		assertEquals(400, cursor.to());
+	}
+
+	private static void walk(NodeHandles handles, long node, List<String> result) {
+		result.add(handles.type(node).name + handles.from(node) + "-" + handles.to(node));
+		for (long child = handles.firstChild(node); child != NodeHandles.None; child = handles.nextSibling(child)) {
+			assertEquals(node, handles.parent(child));
+			walk(handles, child, result);
+		}
+	}
+
+	@Test
+	public void navigatesWithNodeHandles() {
+		for (int maxBufferLength : new int[] { 1, 4, 1024 }) {
+			BuildData data = new BuildData(wideBuffer(200), set);
+			data.setMaxBufferLength(maxBufferLength);
+			Tree tree = build(data);
+			NodeHandles handles = tree.handles();
+			List<String> expected = tree.nodes().map(TreeTest::describe).collect(Collectors.toList());
+			List<String> actual = new ArrayList<>();
+			walk(handles, handles.top(), actual);
+			assertEquals(expected, actual);
+
+			long wide = handles.firstChild(handles.top());
+			assertEquals(NodeHandles.None, handles.parent(handles.top()));
+			List<String> backwards = new ArrayList<>();
+			for (long child = handles.lastChild(wide); child != NodeHandles.None; child = handles.prevSibling(child))
+				backwards.add(handles.type(child).name + handles.from(child));
+			assertEquals(200, backwards.size());
+			assertEquals("b398", backwards.get(0));
+			List<String> nodesBackwards = new ArrayList<>();
+			for (SyntaxNode child = tree.topNode().firstChild().lastChild(); child != null; child = child
+					.prevSibling())
+				nodesBackwards.add(child.name() + child.from());
+			assertEquals(backwards, nodesBackwards);
+
+			SyntaxNode node = tree.resolve(18, 1);
+			long handle = handles.handle(node);
+			assertEquals("a", handles.type(handle).name);
+			assertEquals(describe(node.parent()), describe(handles.node(handles.parent(handle))));
+			assertEquals(handle, handles.handle(handles.node(handle)));
+		}
+	}
+
+	private static void mirrored(SyntaxNode node, List<String> result) {
+		result.add(describe(node));
+		for (SyntaxNode child = node.lastChild(); child != null; child = child.prevSibling())
+			mirrored(child, result);
+	}
+
+	@Test
+	public void walksBackwardsThroughLargeBuffers() {
+		Tree tree = build(new BuildData(wideBuffer(200), set));
+		TreeBuffer buffer = (TreeBuffer) tree.children[0];
+		assertEquals(0, buffer.indexByteSize());
+		List<String> expected = new ArrayList<>(), actual = new ArrayList<>();
+		mirrored(tree.topNode(), expected);
+		TreeCursor cursor = tree.cursor();
+		do
+			actual.add(cursor.name() + cursor.from() + "-" + cursor.to());
+		while (cursor.prev());
+		assertEquals(expected, actual);
+		// 221 nodes, with 4 entries each, plus two for the child offsets
+		assertEquals((221 * 4 + 2) * 2, buffer.indexByteSize());
+	}
+
+	private static final NodeSet errorSet = new NodeSet(Arrays.asList(NodeType.define(0, "T", null, true, null, null),
+			NodeType.define(1, "a", null, null, null, null), NodeType.define(2, "⚠", null, null, true, null),
+			NodeType.define(3, "c", null, null, null, true)));
+
+	// T(a, ⚠(a), c)
+	private static final int[] errors = { 1, 0, 1, 4, 1, 2, 3, 4, 2, 1, 3, 8, 3, 3, 4, 4, 0, 0, 4, 20 };
+
+	@Test
+	public void summarizesSubtrees() {
+		for (int maxBufferLength : new int[] { 1, 1024 }) {
+			BuildData data = new BuildData(errors, errorSet);
+			data.setMaxBufferLength(maxBufferLength);
+			Tree tree = build(data);
+			assertEquals(SubtreeFlag.Named | SubtreeFlag.Error | SubtreeFlag.Skipped, tree.subtreeFlags);
+			assertEquals(tree.subtreeFlags, SubtreeFlag.of(tree.children[0]));
+			assertTrue(TreeUtils.hasChild(tree));
+		}
+		assertEquals(SubtreeFlag.Named, build(new BuildData(buffer, set)).subtreeFlags);
+	}
+
+	@Test
+	public void countsNodeTypes() {
+		for (boolean countTypes : new boolean[] { false, true }) {
+			for (int maxBufferLength : new int[] { 1, 4, 1024 }) {
+				BuildData data = new BuildData(wideBuffer(200), set);
+				data.setMaxBufferLength(maxBufferLength);
+				data.setCountTypes(countTypes);
+				Tree tree = build(data);
+				assertEquals(200, tree.count(set.types.get(1)));
+				assertEquals(20, tree.count(set.types.get(2)));
+				assertEquals(2, tree.count(set.types.get(0)));
+				for (int[] range : new int[][] { { 0, 400 }, { 51, 75 }, { 38, 38 }, { 17, 18 }, { 401, 500 } }) {
+					for (NodeType type : set.types) {
+						int[] expected = { 0 };
+						tree.iterate((t, from, to) -> {
+							if (t == type)
+								expected[0]++;
+							return true;
+						}, null, range[0], range[1]);
+						assertEquals(expected[0], tree.count(type, range[0], range[1]));
+					}
+				}
+
+				// Subtrees without `b` nodes are skipped when counts exist
+				assertEquals(countTypes, tree.typeCounts != null);
+				int[] count = { 0 };
+				tree.iterate(new Tree.TreeVisitor[] { null, null, (type, from, to) -> count[0]++ >= 0 });
+				assertEquals(20, count[0]);
+			}
+		}
+	}
+
+	@Test
+	public void indexesErrors() {
+		for (int maxBufferLength : new int[] { 1, 1024 }) {
+			BuildData data = new BuildData(errors, errorSet);
+			data.setMaxBufferLength(maxBufferLength);
+			Tree tree = build(data);
+			assertEquals("[1, 3]", Arrays.toString(tree.errors()));
+			tree.errors()[0] = 100;
+			assertEquals("[1, 3]", Arrays.toString(tree.errors()));
+		}
+		assertEquals(0, build(new BuildData(buffer, set)).errors().length);
+
+		// Trees that weren't built collect their errors on first use
+		NodeType error = errorSet.types.get(2);
+		Tree leaf = new Tree(error, Tree.noChildren, Tree.noPositions, 2);
+		Tree inner = new Tree(errorSet.types.get(1), new TreeChild[] { leaf }, new int[] { 1 }, 4);
+		Tree tree = new Tree(error, new TreeChild[] { inner, leaf }, new int[] { 0, 5 }, 7);
+		assertEquals("[0, 7, 1, 3, 5, 7]", Arrays.toString(tree.errors()));
+	}
+}